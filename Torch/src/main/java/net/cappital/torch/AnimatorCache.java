@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.content.Context;
+import android.content.res.Configuration;
+
+import com.nineoldandroids.animation.Animator;
+import com.nineoldandroids.animation.AnimatorInflater;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of inflated animator resources, shared by all {@link TorchView TorchViews}.
+ * <p/>
+ * Each resource is parsed once into a prototype, of which {@link #loadAnimator(Context, int)}
+ * returns a clone, so callers can set a target, duration and listeners without affecting the
+ * prototype. The least recently used prototypes are evicted once more than {@link #MAX_ENTRIES}
+ * resources are cached, and all prototypes are dropped when the configuration changes, since
+ * animator resources may have configuration-specific alternatives.
+ */
+final class AnimatorCache {
+
+	private static final int MAX_ENTRIES = 16;
+
+	private static final AnimatorCache INSTANCE = new AnimatorCache();
+
+	private final LinkedHashMap<Integer, Animator> prototypes = new LinkedHashMap<Integer, Animator>(MAX_ENTRIES, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Animator> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Configuration for which the cached prototypes have been inflated.
+	 */
+	private Configuration configuration;
+
+	private AnimatorCache() {
+	}
+
+	static AnimatorCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns a new animator for the resource {@code id}, like {@link
+	 * AnimatorInflater#loadAnimator(Context, int)}, without parsing the resource more than once.
+	 */
+	Animator loadAnimator(Context context, int id) {
+		Animator prototype;
+		synchronized (prototypes) {
+			Configuration current = context.getResources().getConfiguration();
+			if (configuration == null || configuration.diff(current) != 0) {
+				prototypes.clear();
+				configuration = new Configuration(current);
+			}
+			prototype = prototypes.get(id);
+		}
+		if (prototype == null) {
+			prototype = AnimatorInflater.loadAnimator(context, id);
+			synchronized (prototypes) {
+				prototypes.put(id, prototype);
+			}
+		}
+		return prototype.clone();
+	}
+}
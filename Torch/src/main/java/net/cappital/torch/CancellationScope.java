@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.os.Handler;
+import android.view.ViewTreeObserver;
+
+import com.nineoldandroids.animation.Animator;
+import com.nineoldandroids.animation.AnimatorListenerAdapter;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Keeps track of the callbacks and animations a View has scheduled, so they can all be cancelled
+ * at once when the View is detached or cleared, instead of running later and keeping Views and
+ * messages alive meanwhile.
+ * <p/>
+ * Work is only tracked while it is pending: it leaves the scope as soon as it runs or ends, so
+ * {@link #cancelAll()} takes time proportional to the pending work. This class is not thread-safe;
+ * use it on the main thread only.
+ */
+final class CancellationScope {
+
+	/**
+	 * Pending work that can be cancelled.
+	 */
+	interface Cancellable {
+		void cancel();
+	}
+
+	private final LinkedHashSet<Cancellable> pending = new LinkedHashSet<Cancellable>();
+
+	void add(Cancellable cancellable) {
+		pending.add(cancellable);
+	}
+
+	/**
+	 * Stops tracking {@code cancellable}, typically because it has run.
+	 */
+	void remove(Cancellable cancellable) {
+		pending.remove(cancellable);
+	}
+
+	int size() {
+		return pending.size();
+	}
+
+	/**
+	 * Cancels all pending work. Animators are ended rather than cancelled: they jump to their end
+	 * values and their listeners run, so they leave consistent state behind. Work scheduled by those
+	 * listeners is cancelled as well.
+	 */
+	void cancelAll() {
+		while (!pending.isEmpty()) {
+			Cancellable[] work = pending.toArray(new Cancellable[pending.size()]);
+			pending.clear();
+			for (Cancellable cancellable : work) {
+				cancellable.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Tracks {@code animator} until it ends. Call before starting it.
+	 */
+	void track(final Animator animator) {
+		final Cancellable cancellable = new Cancellable() {
+			@Override
+			public void cancel() {
+				animator.end();
+			}
+		};
+		add(cancellable);
+		animator.addListener(new AnimatorListenerAdapter() {
+			@Override
+			public void onAnimationEnd(Animator animation) {
+				remove(cancellable);
+			}
+		});
+	}
+
+	/**
+	 * Runs {@code action} right before the next frame is drawn, and skips drawing that frame so
+	 * that {@code action} can start animations from the state of the previous frame. Nothing runs if
+	 * the scope is cancelled before.
+	 */
+	void runBeforeDraw(final ViewTreeObserver observer, final Runnable action) {
+		PreDrawTask task = new PreDrawTask(observer, action);
+		add(task);
+		observer.addOnPreDrawListener(task);
+	}
+
+	/**
+	 * Returns a task that posts {@code runnable} to {@code handler} and is tracked while it is
+	 * pending.
+	 */
+	ScheduledTask newTask(Handler handler, Runnable runnable) {
+		return new ScheduledTask(handler, runnable);
+	}
+
+	/**
+	 * Runnable that is posted to a Handler, at most once at a time.
+	 */
+	final class ScheduledTask implements Cancellable, Runnable {
+
+		private final Handler handler;
+
+		private final Runnable runnable;
+
+		private ScheduledTask(Handler handler, Runnable runnable) {
+			this.handler = handler;
+			this.runnable = runnable;
+		}
+
+		/**
+		 * Runs this task after {@code delay} milliseconds, replacing a pending run.
+		 */
+		void postDelayed(long delay) {
+			handler.removeCallbacks(this);
+			handler.postDelayed(this, delay);
+			add(this);
+		}
+
+		boolean isPending() {
+			return pending.contains(this);
+		}
+
+		@Override
+		public void cancel() {
+			handler.removeCallbacks(this);
+			remove(this);
+		}
+
+		@Override
+		public void run() {
+			remove(this);
+			runnable.run();
+		}
+	}
+
+	private final class PreDrawTask implements Cancellable, ViewTreeObserver.OnPreDrawListener {
+
+		private final ViewTreeObserver observer;
+
+		private final Runnable action;
+
+		private PreDrawTask(ViewTreeObserver observer, Runnable action) {
+			this.observer = observer;
+			this.action = action;
+		}
+
+		@Override
+		public void cancel() {
+			if (observer.isAlive()) {
+				observer.removeOnPreDrawListener(this);
+			}
+		}
+
+		@Override
+		public boolean onPreDraw() {
+			cancel();
+			remove(this);
+			action.run();
+			return false;
+		}
+	}
+}
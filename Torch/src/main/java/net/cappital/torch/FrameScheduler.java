@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.View;
+
+import com.nineoldandroids.animation.ValueAnimator;
+
+/**
+ * Runs a task once on the next animation frame. Requests made while the task is pending are
+ * coalesced into that single run, so callers can call {@link #schedule()} as often as they like.
+ * <p/>
+ * Uses {@link Choreographer} on API level 16 and up, and falls back to posting to the host View
+ * with the default frame delay on older devices.
+ */
+abstract class FrameScheduler implements CancellationScope.Cancellable {
+
+	private final Runnable task;
+
+	private boolean scheduled = false;
+
+	FrameScheduler(Runnable task) {
+		this.task = task;
+	}
+
+	static FrameScheduler create(View host, Runnable task) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			return new ChoreographerScheduler(task);
+		}
+		return new HandlerScheduler(host, task);
+	}
+
+	/**
+	 * Runs the task on the next frame, unless it is already scheduled.
+	 */
+	void schedule() {
+		if (!scheduled) {
+			scheduled = true;
+			post();
+		}
+	}
+
+	/**
+	 * Removes a pending run of the task, if any.
+	 */
+	@Override
+	public void cancel() {
+		if (scheduled) {
+			scheduled = false;
+			remove();
+		}
+	}
+
+	boolean isScheduled() {
+		return scheduled;
+	}
+
+	void runTask() {
+		// clear first, so the task is able to schedule the next frame
+		scheduled = false;
+		task.run();
+	}
+
+	abstract void post();
+
+	abstract void remove();
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private static final class ChoreographerScheduler extends FrameScheduler implements Choreographer.FrameCallback {
+
+		ChoreographerScheduler(Runnable task) {
+			super(task);
+		}
+
+		@Override
+		void post() {
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+
+		@Override
+		void remove() {
+			Choreographer.getInstance().removeFrameCallback(this);
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			runTask();
+		}
+	}
+
+	private static final class HandlerScheduler extends FrameScheduler implements Runnable {
+
+		private final View host;
+
+		HandlerScheduler(View host, Runnable task) {
+			super(task);
+			this.host = host;
+		}
+
+		@Override
+		void post() {
+			host.postDelayed(this, ValueAnimator.getFrameDelay());
+		}
+
+		@Override
+		void remove() {
+			host.removeCallbacks(this);
+		}
+
+		@Override
+		public void run() {
+			runTask();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+
+import com.nineoldandroids.animation.Animator;
+import com.nineoldandroids.animation.AnimatorListenerAdapter;
+
+/**
+ * Renders Views into hardware layers for the length of an animation, so animating their alpha
+ * and translation only recomposites the layers instead of redrawing the Views on every frame.
+ * The previous layer types are restored when the animation ends or is cancelled.
+ * <p/>
+ * Does nothing below API level 11, and for Views that are not hardware accelerated, where a layer
+ * would be rendered in software.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+final class HardwareLayerListener extends AnimatorListenerAdapter {
+
+	private final View[] views;
+
+	private final int[] previousLayerTypes;
+
+	private HardwareLayerListener(View[] views) {
+		this.views = views;
+		this.previousLayerTypes = new int[views.length];
+	}
+
+	/**
+	 * Promotes {@code views} to hardware layers while {@code animator} runs. {@code null} elements
+	 * are skipped.
+	 */
+	static void attach(Animator animator, View... views) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && views.length > 0) {
+			animator.addListener(new HardwareLayerListener(views));
+		}
+	}
+
+	@Override
+	public void onAnimationStart(Animator animation) {
+		for (int i = 0; i < views.length; i++) {
+			View view = views[i];
+			if (view == null) {
+				continue;
+			}
+			previousLayerTypes[i] = view.getLayerType();
+			if (previousLayerTypes[i] != View.LAYER_TYPE_HARDWARE && view.isHardwareAccelerated()) {
+				view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+			}
+		}
+	}
+
+	@Override
+	public void onAnimationEnd(Animator animation) {
+		// also called after onAnimationCancel()
+		for (int i = 0; i < views.length; i++) {
+			View view = views[i];
+			if (view != null && view.getLayerType() != previousLayerTypes[i]) {
+				view.setLayerType(previousLayerTypes[i], null);
+			}
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import java.util.Arrays;
+
+/**
+ * Minimal open-addressing hash map with primitive {@code long} keys, used by {@link TorchView} to
+ * track messages by their internal key or by their {@link Message#getId() ID} in constant time
+ * without boxing or allocating per operation.
+ * <p/>
+ * The key {@code 0} is reserved to mark empty slots and can not be stored. This matches the keys
+ * that {@link TorchView} hands out, which start at 1, and message IDs, where 0 means "no ID". This
+ * class is not thread-safe.
+ */
+final class LongHashMap<V> {
+
+	private static final long EMPTY = 0;
+
+	private long[] keys;
+
+	private Object[] values;
+
+	private int size;
+
+	private int mask;
+
+	LongHashMap() {
+		this(16);
+	}
+
+	LongHashMap(int initialCapacity) {
+		int capacity = 4;
+		while (capacity < initialCapacity * 2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(long key) {
+		int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int indexOf(long key) {
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(long key) {
+		return key != EMPTY && indexOf(key) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		if (key == EMPTY) {
+			return null;
+		}
+		int i = indexOf(key);
+		return i >= 0 ? (V) values[i] : null;
+	}
+
+	/**
+	 * Associates {@code value} with {@code key}.
+	 *
+	 * @return The previous value for {@code key}, or {@code null}.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (key == EMPTY) {
+			throw new IllegalArgumentException("Key 0 is reserved");
+		}
+
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length) {
+			resize(keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the mapping for {@code key}.
+	 *
+	 * @return The removed value, or {@code null} if there was no mapping.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		if (key == EMPTY) {
+			return null;
+		}
+		int i = indexOf(key);
+		if (i < 0) {
+			return null;
+		}
+
+		V old = (V) values[i];
+		size--;
+
+		// shift following entries of the probe sequence back, so no tombstones are needed
+		int gap = i;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == EMPTY) {
+				break;
+			}
+			int home = hash(keys[j]) & mask;
+			// move entry into the gap if its home slot does not lie cyclically in (gap, j]
+			if (gap <= j ? (home <= gap || home > j) : (home <= gap && home > j)) {
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+		keys[gap] = EMPTY;
+		values[gap] = null;
+
+		return old;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of slots, for iterating with {@link #keyAt(int)} and {@link
+	 * #valueAt(int)}.
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Returns the key in {@code slot}, or 0 if the slot is empty. The map must not be modified while
+	 * iterating over its slots.
+	 */
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * Returns the value in {@code slot}, or {@code null} if the slot is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public V valueAt(int slot) {
+		return (V) values[slot];
+	}
+
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, EMPTY);
+			Arrays.fill(values, null);
+			size = 0;
+		}
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+
+		for (int n = 0; n < oldKeys.length; n++) {
+			long key = oldKeys[n];
+			if (key != EMPTY) {
+				int i = hash(key) & mask;
+				while (keys[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = key;
+				values[i] = oldValues[n];
+			}
+		}
+	}
+}
@@ -17,6 +17,10 @@ package net.cappital.torch;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
 
 /**
  * Basic class that is used by {@link TorchView} to show messages.
@@ -29,10 +33,36 @@ import android.os.Parcelable;
  * sure to override {@link #writeToParcel(android.os.Parcel, int)} and call {@link
  * #Message(android.os.Parcel)} in your Parcelable-constructor. See {@link
  * net.cappital.torch.TitleMessage} for an example!
+ * <p/>
+ * Messages that are shown at a high rate can be taken from a pool with {@link #obtain(String)}
+ * instead of being allocated. {@link TorchView} recycles such a message once it is done with it,
+ * so don't keep a reference to it after showing it. Subclasses can join the pool by offering an
+ * {@code obtain} method that uses {@link #obtainFromPool(Class)} and {@link #poolable(Message)},
+ * and by overriding {@link #onRecycle()} to clear their own fields.
  */
 @SuppressWarnings("unused")
 public class Message implements Parcelable {
 
+	/**
+	 * Priority for messages that may wait behind everything else and may be preempted.
+	 */
+	public static final int PRIORITY_LOW = -1;
+
+	/**
+	 * Priority of messages that do not set a priority.
+	 */
+	public static final int PRIORITY_DEFAULT = 0;
+
+	/**
+	 * Priority for messages that should be shown before default messages.
+	 */
+	public static final int PRIORITY_HIGH = 1;
+
+	/**
+	 * Priority for messages that should be shown as soon as possible.
+	 */
+	public static final int PRIORITY_URGENT = 2;
+
 	private int id;
 
 	private int viewType;
@@ -45,10 +75,178 @@ public class Message implements Parcelable {
 
 	private boolean isDismissable = false;
 
+	private int priority = PRIORITY_DEFAULT;
+
+	private long timeToLive = 0;
+
+	private boolean hardwareLayerEnabled = true;
+
+	/**
+	 * Time at which this message was queued by {@link TorchView}, in {@link
+	 * android.os.SystemClock#uptimeMillis()}.
+	 */
+	long queuedAt;
+
+	/**
+	 * Internal key that {@link TorchView} assigns when this message is queued, or 0 if it has never
+	 * been queued. A message that takes the place of another one in {@link
+	 * TorchView#update(Message)} inherits its key.
+	 */
+	long key;
+
+	/**
+	 * Number of the record of this message in the {@link MessageJournal} of its TorchView, or 0 if it
+	 * has none.
+	 */
+	long journalSeq;
+
+	/**
+	 * Layout of {@link #content} computed ahead of time, see {@link #precomputeLayouts(TextPaint,
+	 * int)}. Not parcelled.
+	 */
+	private volatile Layout contentLayout;
+
+	/**
+	 * Whether recycled messages are checked for use, see {@link #setPoolDebugging(boolean)}.
+	 */
+	private static volatile boolean poolDebugging = false;
+
+	/**
+	 * Whether this message has been obtained from the pool, and returns to it when it is recycled.
+	 */
+	private boolean pooled = false;
+
+	private volatile boolean recycled = false;
+
 	public Message(String contents) {
 		this.content = contents;
 	}
 
+	/**
+	 * Returns a message with {@code content} and default settings, reusing a recycled message if
+	 * one is available. {@link TorchView} recycles the message once it has been removed, has expired
+	 * or has been dropped or cleared, including a new message that is dropped because the queue is
+	 * full. Only a message refused by {@link TorchView#reject(TorchView.OnRejectListener)} is left
+	 * to the caller, who may show it again later. Call {@link #recycle()} on a message that is
+	 * not shown after all.
+	 *
+	 * @param content The String-message to display
+	 *
+	 * @return A pooled Message.
+	 */
+	public static Message obtain(String content) {
+		Message message = obtainFromPool(Message.class);
+		if (message == null) {
+			return poolable(new Message(content));
+		}
+		message.content = content;
+		return message;
+	}
+
+	/**
+	 * Returns a recycled message of exactly {@code type} with default settings, or {@code null} if
+	 * none is available. Use this in the {@code obtain} method of a subclass, and pass the message
+	 * it creates otherwise to {@link #poolable(Message)}.
+	 */
+	protected static <T extends Message> T obtainFromPool(Class<T> type) {
+		T message = MessagePool.acquire(type);
+		if (message != null) {
+			((Message) message).recycled = false;
+		}
+		return message;
+	}
+
+	/**
+	 * Marks {@code message}, which has just been created, as part of the pool: it is recycled by
+	 * {@link TorchView} or {@link #recycle()}.
+	 *
+	 * @return {@code message}, for method chaining.
+	 */
+	protected static <T extends Message> T poolable(T message) {
+		((Message) message).pooled = true;
+		return message;
+	}
+
+	/**
+	 * Returns this message to the pool, if it has been obtained from it; otherwise this does
+	 * nothing. The message must not be used afterwards. Messages that have been shown are recycled
+	 * by {@link TorchView}.
+	 *
+	 * @throws IllegalStateException if pool debugging is enabled and this message has already been
+	 *                               recycled.
+	 */
+	public void recycle() {
+		if (!pooled) {
+			return;
+		}
+		if (recycled) {
+			if (poolDebugging) {
+				throw new IllegalStateException("Message has already been recycled");
+			}
+			return;
+		}
+		recycled = true;
+		onRecycle();
+		MessagePool.release(this);
+	}
+
+	/**
+	 * Called when this message is recycled, to reset it to the state of a new message. Subclasses
+	 * that join the pool should clear their own fields and call through to the super class.
+	 */
+	protected void onRecycle() {
+		id = 0;
+		viewType = 0;
+		content = null;
+		contentLayout = null;
+		inAnimationResource = R.anim.torch_message_in_default;
+		outAnimationResource = R.anim.torch_message_out_default;
+		isDismissable = false;
+		priority = PRIORITY_DEFAULT;
+		timeToLive = 0;
+		hardwareLayerEnabled = true;
+		queuedAt = 0;
+		key = 0;
+		journalSeq = 0;
+	}
+
+	/**
+	 * Recycles this message if it has been obtained from the pool and has not been recycled yet.
+	 * {@link TorchView} uses this, as a message can leave it along more than one path.
+	 */
+	final void recycleIfPooled() {
+		if (pooled && !recycled) {
+			recycle();
+		}
+	}
+
+	/**
+	 * Returns whether this message has been recycled, and not obtained again since.
+	 */
+	public boolean isRecycled() {
+		return recycled;
+	}
+
+	/**
+	 * Enables or disables checks for messages that are used after they have been recycled. While
+	 * enabled, changing or showing a recycled message, or recycling it twice, throws an {@link
+	 * IllegalStateException}. Enable this in debug builds only.
+	 *
+	 * @param enabled Whether to check for use after recycle.
+	 */
+	public static void setPoolDebugging(boolean enabled) {
+		poolDebugging = enabled;
+	}
+
+	/**
+	 * Throws if pool debugging is enabled and this message has been recycled.
+	 */
+	final void checkNotRecycled() {
+		if (recycled && poolDebugging) {
+			throw new IllegalStateException("Message is used after it has been recycled");
+		}
+	}
+
 	/**
 	 * Get the ID of this message. Messages are only added to the queue if their ID is unique in the
 	 * queue, or 0.
@@ -68,6 +266,7 @@ public class Message implements Parcelable {
 	 * @return This Message for method chaining.
 	 */
 	public Message setId(int id) {
+		checkNotRecycled();
 		this.id = id;
 		return this;
 	}
@@ -91,6 +290,7 @@ public class Message implements Parcelable {
 	 * @return This object for method chaining.
 	 */
 	public Message setViewType(int viewType) {
+		checkNotRecycled();
 		this.viewType = viewType;
 		return this;
 	}
@@ -112,10 +312,61 @@ public class Message implements Parcelable {
 	 * @return This object for method chaining.
 	 */
 	public Message setContent(String content) {
+		checkNotRecycled();
 		this.content = content;
+		this.contentLayout = null;
 		return this;
 	}
 
+	/**
+	 * Returns the layout of {@link #getContent()} that has been computed on a background thread, if
+	 * {@link TorchView#setTextPrecomputation(boolean)} is enabled and it is ready. It is laid out like
+	 * the default message View, see {@link #buildTextLayout(CharSequence, TextPaint, int)}. Check
+	 * {@link Layout#getWidth()} before using it: it has been computed for the width of the default
+	 * message View.
+	 *
+	 * @return The precomputed layout, or {@code null}.
+	 */
+	public Layout getContentLayout() {
+		return contentLayout;
+	}
+
+	/**
+	 * Computes the text layouts of this message, so that its text does not have to be measured on
+	 * the main thread when it is displayed. Called by {@link TorchView} on a background thread.
+	 * <p/>
+	 * Subclasses that show more text can override this to compute layouts for that text as well,
+	 * using {@link #buildTextLayout(CharSequence, TextPaint, int)}. Make sure to call through to
+	 * the super class.
+	 *
+	 * @param paint Paint to measure with; it belongs to this message and is not used elsewhere.
+	 * @param width Available width for the text, in pixels.
+	 */
+	protected void precomputeLayouts(TextPaint paint, int width) {
+		String text = content;
+		Layout layout = buildTextLayout(text, paint, width);
+		// the content may have changed meanwhile, for example if this message has been recycled
+		if (text == content) {
+			contentLayout = layout;
+		}
+	}
+
+	/**
+	 * Lays out {@code text} the way the default message View shows it: on a single line of at most
+	 * {@code width} pixels, ellipsized at the end. Can be called on any thread, as long as {@code
+	 * paint} is not modified meanwhile.
+	 *
+	 * @return The layout, or {@code null} if {@code text} is {@code null}.
+	 */
+	protected static Layout buildTextLayout(CharSequence text, TextPaint paint, int width) {
+		if (text == null) {
+			return null;
+		}
+		width = Math.max(0, width);
+		CharSequence line = TextUtils.ellipsize(text, paint, width, TextUtils.TruncateAt.END);
+		return new StaticLayout(line, paint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+	}
+
 	/**
 	 * Get the in-animation for this message.
 	 *
@@ -134,6 +385,7 @@ public class Message implements Parcelable {
 	 * @return This Message for method chaining.
 	 */
 	public Message setInAnimationResource(int inAnimationResource) {
+		checkNotRecycled();
 		this.inAnimationResource = inAnimationResource;
 		return this;
 	}
@@ -156,6 +408,7 @@ public class Message implements Parcelable {
 	 * @return This Message for method chaining.
 	 */
 	public Message setOutAnimationResource(int outAnimationResource) {
+		checkNotRecycled();
 		this.outAnimationResource = outAnimationResource;
 		return this;
 	}
@@ -177,10 +430,110 @@ public class Message implements Parcelable {
 	 * @return This object for method chaining.
 	 */
 	public Message setDismissable(boolean dismissable) {
+		checkNotRecycled();
 		this.isDismissable = dismissable;
 		return this;
 	}
 
+	/**
+	 * Get the priority of this message. See {@link #setPriority(int)}.
+	 *
+	 * @return The priority of this message.
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Set the priority of this message. Queued messages with a higher priority are shown before
+	 * messages with a lower priority; messages with equal priority are shown in the order in which
+	 * they were added. If all slots of {@link net.cappital.torch.TorchView} are taken, a message
+	 * replaces the displayed message with the lowest priority if that priority is lower than its
+	 * own.
+	 * <p/>
+	 * Changing the priority of a message that is already queued has no effect.
+	 *
+	 * @param priority Arbitrary int, or one of the {@code PRIORITY_*} constants
+	 *
+	 * @return This object for method chaining.
+	 */
+	public Message setPriority(int priority) {
+		checkNotRecycled();
+		this.priority = priority;
+		return this;
+	}
+
+	/**
+	 * Returns an estimate of the memory this message occupies while it is queued, in bytes. This is
+	 * used by {@link TorchView#setQueueCapacity(int, long)}. Override this method if your subclass
+	 * holds a significant amount of data.
+	 *
+	 * @return Estimated size of this message in bytes.
+	 */
+	public int getEstimatedSize() {
+		// object headers and fields, plus 2 bytes per char
+		return 64 + (content != null ? 2 * content.length() : 0);
+	}
+
+	/**
+	 * Get the time-to-live of this message. See {@link #setTimeToLive(long)}.
+	 *
+	 * @return The time-to-live in milliseconds, or 0 if this message does not expire.
+	 */
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * Set how long this message stays relevant after it has been passed to {@link TorchView}. A
+	 * message that is still queued when its time-to-live has passed is dropped without ever being
+	 * displayed. This does not affect how long the message is displayed.
+	 * <p/>
+	 * The time-to-live starts again when a queued message is restored after an orientation-change.
+	 *
+	 * @param timeToLive The time-to-live in milliseconds, or 0 if this message never expires.
+	 *
+	 * @return This object for method chaining.
+	 */
+	public Message setTimeToLive(long timeToLive) {
+		checkNotRecycled();
+		this.timeToLive = timeToLive;
+		return this;
+	}
+
+	/**
+	 * Returns whether the View of this message is rendered into a hardware layer while it is
+	 * animated. See {@link #setHardwareLayerEnabled(boolean)}.
+	 *
+	 * @return {@code true} if a hardware layer is used during animations.
+	 */
+	public boolean isHardwareLayerEnabled() {
+		return hardwareLayerEnabled;
+	}
+
+	/**
+	 * Set whether the View of this message is rendered into a hardware layer while {@link
+	 * TorchView} animates it. This is enabled by default, which keeps complex Views from being
+	 * redrawn on every frame. Disable it for Views that are cheap to draw, to save the memory and
+	 * the time it takes to render the layer.
+	 *
+	 * @param enabled Whether to use a hardware layer during animations
+	 *
+	 * @return This object for method chaining.
+	 */
+	public Message setHardwareLayerEnabled(boolean enabled) {
+		checkNotRecycled();
+		this.hardwareLayerEnabled = enabled;
+		return this;
+	}
+
+	/**
+	 * Returns whether this message has been queued longer than its time-to-live at {@code now}.
+	 */
+	boolean isExpired(long now) {
+		return timeToLive > 0 && now - queuedAt >= timeToLive;
+	}
+
 	public Message(Parcel in) {
 		this.id = in.readInt();
 		this.viewType = in.readInt();
@@ -188,6 +541,9 @@ public class Message implements Parcelable {
 		this.inAnimationResource = in.readInt();
 		this.outAnimationResource = in.readInt();
 		this.isDismissable = in.readInt() == 1;
+		this.priority = in.readInt();
+		this.timeToLive = in.readLong();
+		this.hardwareLayerEnabled = in.readInt() == 1;
 	}
 
 	@Override
@@ -198,6 +554,9 @@ public class Message implements Parcelable {
 		out.writeInt(this.inAnimationResource);
 		out.writeInt(this.outAnimationResource);
 		out.writeInt(this.isDismissable ? 1 : 0);
+		out.writeInt(this.priority);
+		out.writeLong(this.timeToLive);
+		out.writeInt(this.hardwareLayerEnabled ? 1 : 0);
 	}
 
 	@Override
@@ -222,7 +581,15 @@ public class Message implements Parcelable {
 			return false;
 		}
 
-		return content.equals(m.content);
+		return content != null ? content.equals(m.content) : m.content == null;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = id;
+		result = 31 * result + viewType;
+		result = 31 * result + (content != null ? content.hashCode() : 0);
+		return result;
 	}
 
 	public static final Creator<Message> CREATOR = new Creator<Message>() {
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact Parcel format for lists of {@link Message Messages}, used by {@link TorchView} to save
+ * its state.
+ * <p/>
+ * Unlike {@link Parcel#writeList(List)}, which writes the class name of every element and looks up
+ * its {@code CREATOR} by reflection on every read, this format writes a table of the classes in the
+ * list once, followed by one type index per message. The fields of plain {@link Message Messages}
+ * are written as packed columns, one array per field. Instances of subclasses are written with
+ * their own {@link Message#writeToParcel(Parcel, int)} after the columns, and read with the {@code
+ * CREATOR} of their class, which is looked up once per class.
+ */
+final class MessageCodec {
+
+	private static final int VERSION = 1;
+
+	private static final int FLAG_DISMISSABLE = 1;
+
+	private static final int FLAG_HARDWARE_LAYER = 1 << 1;
+
+	private MessageCodec() {
+	}
+
+	static void writeMessages(Parcel out, List<Message> messages, int flags) {
+		// type table; plain messages are type 0
+		ArrayList<Class<?>> types = new ArrayList<Class<?>>();
+		types.add(Message.class);
+		int[] typeIndices = new int[messages.size()];
+		int plainCount = 0;
+		for (int i = 0; i < typeIndices.length; i++) {
+			Class<?> type = messages.get(i).getClass();
+			int index = types.indexOf(type);
+			if (index < 0) {
+				index = types.size();
+				types.add(type);
+			}
+			typeIndices[i] = index;
+			if (index == 0) {
+				plainCount++;
+			}
+		}
+
+		out.writeInt(VERSION);
+		out.writeInt(types.size() - 1);
+		for (int i = 1; i < types.size(); i++) {
+			out.writeString(types.get(i).getName());
+		}
+		out.writeIntArray(typeIndices);
+
+		// columns of plain messages
+		int[] ids = new int[plainCount];
+		int[] viewTypes = new int[plainCount];
+		int[] inAnimations = new int[plainCount];
+		int[] outAnimations = new int[plainCount];
+		int[] priorities = new int[plainCount];
+		int[] messageFlags = new int[plainCount];
+		long[] timesToLive = new long[plainCount];
+		String[] contents = new String[plainCount];
+		int column = 0;
+		for (int i = 0; i < typeIndices.length; i++) {
+			if (typeIndices[i] != 0) {
+				continue;
+			}
+			Message message = messages.get(i);
+			ids[column] = message.getId();
+			viewTypes[column] = message.getViewType();
+			inAnimations[column] = message.getInAnimationResource();
+			outAnimations[column] = message.getOutAnimationResource();
+			priorities[column] = message.getPriority();
+			messageFlags[column] = (message.isDismissable() ? FLAG_DISMISSABLE : 0)
+					| (message.isHardwareLayerEnabled() ? FLAG_HARDWARE_LAYER : 0);
+			timesToLive[column] = message.getTimeToLive();
+			contents[column] = message.getContent();
+			column++;
+		}
+		out.writeIntArray(ids);
+		out.writeIntArray(viewTypes);
+		out.writeIntArray(inAnimations);
+		out.writeIntArray(outAnimations);
+		out.writeIntArray(priorities);
+		out.writeIntArray(messageFlags);
+		out.writeLongArray(timesToLive);
+		out.writeStringArray(contents);
+
+		for (int i = 0; i < typeIndices.length; i++) {
+			if (typeIndices[i] != 0) {
+				messages.get(i).writeToParcel(out, flags);
+			}
+		}
+	}
+
+	static ArrayList<Message> readMessages(Parcel in, ClassLoader classLoader) {
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new BadParcelableException("Unknown message format " + version);
+		}
+
+		int typeCount = in.readInt();
+		Parcelable.Creator<?>[] creators = new Parcelable.Creator<?>[typeCount + 1];
+		for (int i = 1; i <= typeCount; i++) {
+			creators[i] = getCreator(in.readString(), classLoader);
+		}
+		int[] typeIndices = in.createIntArray();
+
+		int[] ids = in.createIntArray();
+		int[] viewTypes = in.createIntArray();
+		int[] inAnimations = in.createIntArray();
+		int[] outAnimations = in.createIntArray();
+		int[] priorities = in.createIntArray();
+		int[] messageFlags = in.createIntArray();
+		long[] timesToLive = in.createLongArray();
+		String[] contents = in.createStringArray();
+
+		ArrayList<Message> messages = new ArrayList<Message>(typeIndices.length);
+		int column = 0;
+		for (int typeIndex : typeIndices) {
+			if (typeIndex != 0) {
+				messages.add((Message) creators[typeIndex].createFromParcel(in));
+				continue;
+			}
+			Message message = new Message(contents[column])
+					.setId(ids[column])
+					.setViewType(viewTypes[column])
+					.setInAnimationResource(inAnimations[column])
+					.setOutAnimationResource(outAnimations[column])
+					.setPriority(priorities[column])
+					.setDismissable((messageFlags[column] & FLAG_DISMISSABLE) != 0)
+					.setTimeToLive(timesToLive[column])
+					.setHardwareLayerEnabled((messageFlags[column] & FLAG_HARDWARE_LAYER) != 0);
+			messages.add(message);
+			column++;
+		}
+		return messages;
+	}
+
+	private static Parcelable.Creator<?> getCreator(String className, ClassLoader classLoader) {
+		try {
+			Class<?> type = Class.forName(className, true, classLoader);
+			Object creator = type.getField("CREATOR").get(null);
+			if (!(creator instanceof Parcelable.Creator)) {
+				throw new BadParcelableException("No Parcelable.Creator in " + className);
+			}
+			return (Parcelable.Creator<?>) creator;
+		} catch (ClassNotFoundException e) {
+			throw new BadParcelableException(e);
+		} catch (NoSuchFieldException e) {
+			throw new BadParcelableException(e);
+		} catch (IllegalAccessException e) {
+			throw new BadParcelableException(e);
+		}
+	}
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the queued and displayed messages of a {@link TorchView} in a file, so they are shown
+ * again after the process has been killed. See {@link TorchView#setMessageJournal(MessageJournal)}.
+ * <p/>
+ * The file is an append-only log: each message that is queued appends a record with its contents,
+ * and each message that is removed, expires or is dropped appends a small removal record. Once
+ * more than half of the records are obsolete, the file is compacted by rewriting the remaining
+ * messages. All file access happens on a background thread; the main thread only encodes the
+ * messages, in the format of {@link Message#writeToParcel(android.os.Parcel, int)}. Records are
+ * written out in batches, so the last messages may be lost if the process is killed right after
+ * they have been shown.
+ * <p/>
+ * On startup the file is read on the background thread. The TorchView then restores the messages
+ * in their original order as its queue drains: each time it has room, the next small batch is
+ * decoded in the background and queued. Messages that do not fit stay in the journal until there
+ * is room. Since the records
+ * are parcels, a journal should not be expected to survive an update of the app or the platform:
+ * records that can no longer be read are skipped.
+ * <p/>
+ * Keep one instance per file for the lifetime of the process, for example in the Application, and
+ * set it on the TorchView each time the Activity is created. The TorchView then no longer saves its
+ * messages with its instance state, as the journal restores them.
+ */
+public final class MessageJournal {
+
+	private static final String TAG = "MessageJournal";
+
+	private static final int MAGIC = 0x54524a31;
+
+	private static final int RECORD_PUT = 1;
+
+	private static final int RECORD_REMOVE = 2;
+
+	/**
+	 * Records larger than this are considered damaged.
+	 */
+	private static final int MAX_RECORD_SIZE = 1 << 20;
+
+	/**
+	 * Minimum number of obsolete records before the file is compacted.
+	 */
+	private static final int MIN_COMPACTION_RECORDS = 64;
+
+	/**
+	 * Number of messages decoded per {@link Replay#requestNext()}.
+	 */
+	static final int REPLAY_BATCH_SIZE = 16;
+
+	/**
+	 * Receives the messages of a {@link Replay} on the main thread.
+	 */
+	interface Receiver {
+		/**
+		 * @param replay   The replay that has restored the messages.
+		 * @param messages The next messages, in their original order. Empty once all messages have
+		 *                 been restored.
+		 */
+		void onReplay(Replay replay, ArrayList<Message> messages);
+	}
+
+	private final File file;
+
+	private final ClassLoader classLoader;
+
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "TorchJournal");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
+	/**
+	 * Source of record numbers, see {@link Message#journalSeq}. Records read from the file are
+	 * numbered again when it is opened.
+	 */
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Current record of each message in the journal, in the order in which they have been queued.
+	 * Only accessed on the background thread.
+	 */
+	private final LinkedHashMap<Long, Record> live = new LinkedHashMap<Long, Record>();
+
+	/**
+	 * Number of records in the file that are no longer in {@link #live}.
+	 */
+	private int obsoleteRecords = 0;
+
+	/**
+	 * Appends to the file, or {@code null} if it could not be written; the journal then only keeps
+	 * messages in memory.
+	 */
+	private DataOutputStream out;
+
+	/**
+	 * @param file File to keep the messages in. It is created if it does not exist.
+	 */
+	public MessageJournal(File file) {
+		this.file = file;
+		this.classLoader = MessageJournal.class.getClassLoader();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				open();
+			}
+		});
+	}
+
+	/**
+	 * Adds or replaces the record of {@code message}. Called on the main thread.
+	 *
+	 * @param owner Token of the TorchView that shows {@code message}; its replays skip the record.
+	 */
+	void put(Message message, Object owner) {
+		if (message.journalSeq == 0) {
+			message.journalSeq = sequence.incrementAndGet();
+		}
+		final long seq = message.journalSeq;
+		final byte[] data = encode(message);
+		final Object recordOwner = owner;
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				if (live.put(seq, new Record(data, recordOwner)) != null) {
+					obsoleteRecords++;
+				}
+				writePut(seq, data);
+			}
+		});
+	}
+
+	/**
+	 * Removes the record of {@code message}, if it has one. Called on the main thread.
+	 */
+	void remove(Message message) {
+		final long seq = message.journalSeq;
+		if (seq == 0) {
+			return;
+		}
+		message.journalSeq = 0;
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				if (live.remove(seq) != null) {
+					// the record of the message and this removal
+					obsoleteRecords += 2;
+					writeRemove(seq);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Removes all records.
+	 */
+	void clear() {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				live.clear();
+				rewrite();
+			}
+		});
+	}
+
+	/**
+	 * Starts restoring the messages of this journal, except the ones {@code owner} has put itself.
+	 * Nothing is decoded until {@link Replay#requestNext()} is called. Called on the main thread.
+	 *
+	 * @param owner    Token of the TorchView that restores the messages, as passed to {@link
+	 *                 #put(Message, Object)}.
+	 * @param receiver Receives the restored messages.
+	 */
+	Replay replay(Object owner, Receiver receiver) {
+		final Replay replay = new Replay(owner, receiver);
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				for (Map.Entry<Long, Record> entry : live.entrySet()) {
+					if (entry.getValue().owner != replay.owner) {
+						replay.pending.add(entry.getKey());
+					}
+				}
+			}
+		});
+		return replay;
+	}
+
+	/**
+	 * Restores the messages of the journal into one TorchView, a batch at a time, see {@link
+	 * #replay(Object, Receiver)}. Records are claimed by the owner of the replay as they are
+	 * decoded, so a later replay by another TorchView skips them.
+	 */
+	final class Replay {
+
+		private final Object owner;
+
+		private final Receiver receiver;
+
+		/**
+		 * Records that remain to be restored, in their original order. Only accessed on the
+		 * background thread.
+		 */
+		private final ArrayDeque<Long> pending = new ArrayDeque<Long>();
+
+		private Replay(Object owner, Receiver receiver) {
+			this.owner = owner;
+			this.receiver = receiver;
+		}
+
+		/**
+		 * Decodes the next {@link #REPLAY_BATCH_SIZE} messages in the background and hands them to
+		 * the receiver. Called on the main thread, at most once per delivered batch.
+		 */
+		void requestNext() {
+			execute(new Runnable() {
+				@Override
+				public void run() {
+					final ArrayList<Message> batch = new ArrayList<Message>(REPLAY_BATCH_SIZE);
+					Long seq;
+					while (batch.size() < REPLAY_BATCH_SIZE && (seq = pending.poll()) != null) {
+						Record record = live.get(seq);
+						if (record == null || record.owner == owner) {
+							// removed or replaced meanwhile
+							continue;
+						}
+						Message message = decode(record.data);
+						if (message == null) {
+							live.remove(seq);
+							obsoleteRecords += 2;
+							writeRemove(seq);
+							continue;
+						}
+						record.owner = owner;
+						message.journalSeq = seq;
+						batch.add(message);
+					}
+					mainHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							receiver.onReplay(Replay.this, batch);
+						}
+					});
+				}
+			});
+		}
+
+		/**
+		 * Hands back restored {@code messages} that have not been queued, for example because the
+		 * queue is full. Their records are kept, and restored again by the next {@link
+		 * #requestNext()}. Called on the main thread.
+		 */
+		void giveBack(List<Message> messages) {
+			final long[] seqs = new long[messages.size()];
+			for (int i = 0; i < seqs.length; i++) {
+				seqs[i] = messages.get(i).journalSeq;
+				messages.get(i).journalSeq = 0;
+			}
+			execute(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = seqs.length - 1; i >= 0; i--) {
+						Record record = live.get(seqs[i]);
+						if (record != null && record.owner == owner) {
+							record.owner = null;
+							pending.addFirst(seqs[i]);
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Runs {@code task} on the background thread, and writes out the file once no more tasks are
+	 * waiting, or compacts it if enough records have become obsolete.
+	 */
+	private void execute(final Runnable task) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				task.run();
+				if (!executor.getQueue().isEmpty()) {
+					return;
+				}
+				if (obsoleteRecords >= MIN_COMPACTION_RECORDS && obsoleteRecords > live.size()) {
+					rewrite();
+				} else {
+					flush();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads the messages in the file into {@link #live}, and rewrites it without obsolete records.
+	 * A damaged record, for example one cut short when the process was killed, ends the file.
+	 */
+	private void open() {
+		LinkedHashMap<Long, byte[]> records = new LinkedHashMap<Long, byte[]>();
+		if (file.exists()) {
+			DataInputStream in = null;
+			try {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				if (in.readInt() != MAGIC) {
+					throw new IOException("Not a message journal: " + file);
+				}
+				int type;
+				while ((type = in.read()) != -1) {
+					long seq = in.readLong();
+					if (type == RECORD_PUT) {
+						int length = in.readInt();
+						if (length < 0 || length > MAX_RECORD_SIZE) {
+							throw new IOException("Damaged record in " + file);
+						}
+						byte[] data = new byte[length];
+						in.readFully(data);
+						// a replaced message keeps its position
+						records.put(seq, data);
+					} else if (type == RECORD_REMOVE) {
+						records.remove(seq);
+					} else {
+						throw new IOException("Damaged record in " + file);
+					}
+				}
+			} catch (IOException e) {
+				Log.w(TAG, "Journal read up to " + records.size() + " messages", e);
+			} finally {
+				closeQuietly(in);
+			}
+		}
+
+		for (byte[] data : records.values()) {
+			live.put(sequence.incrementAndGet(), new Record(data, null));
+		}
+		rewrite();
+	}
+
+	/**
+	 * Replaces the file by one with only the records in {@link #live}, and reopens it for appending.
+	 */
+	private void rewrite() {
+		closeQuietly(out);
+		out = null;
+		obsoleteRecords = 0;
+
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream rewritten = null;
+		try {
+			rewritten = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			rewritten.writeInt(MAGIC);
+			for (Map.Entry<Long, Record> entry : live.entrySet()) {
+				writePut(rewritten, entry.getKey(), entry.getValue().data);
+			}
+			rewritten.close();
+			rewritten = null;
+			if (!temp.renameTo(file)) {
+				throw new IOException("Cannot replace " + file);
+			}
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		} catch (IOException e) {
+			Log.w(TAG, "Cannot write journal", e);
+			closeQuietly(rewritten);
+		}
+	}
+
+	private void writePut(long seq, byte[] data) {
+		if (out != null) {
+			try {
+				writePut(out, seq, data);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	private static void writePut(DataOutputStream out, long seq, byte[] data) throws IOException {
+		out.write(RECORD_PUT);
+		out.writeLong(seq);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private void writeRemove(long seq) {
+		if (out != null) {
+			try {
+				out.write(RECORD_REMOVE);
+				out.writeLong(seq);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	private void flush() {
+		if (out != null) {
+			try {
+				out.flush();
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Stops writing after an error; the records in memory are written again by the next
+	 * compaction.
+	 */
+	private void fail(IOException e) {
+		Log.w(TAG, "Cannot write journal", e);
+		closeQuietly(out);
+		out = null;
+		obsoleteRecords = Math.max(obsoleteRecords, MIN_COMPACTION_RECORDS);
+	}
+
+	private static byte[] encode(Message message) {
+		Parcel parcel = Parcel.obtain();
+		try {
+			MessageCodec.writeMessages(parcel, Collections.singletonList(message), 0);
+			return parcel.marshall();
+		} finally {
+			parcel.recycle();
+		}
+	}
+
+	/**
+	 * Returns the message in {@code data}, or {@code null} if it cannot be read.
+	 */
+	private Message decode(byte[] data) {
+		Parcel parcel = Parcel.obtain();
+		try {
+			parcel.unmarshall(data, 0, data.length);
+			parcel.setDataPosition(0);
+			ArrayList<Message> messages = MessageCodec.readMessages(parcel, classLoader);
+			return messages.size() == 1 ? messages.get(0) : null;
+		} catch (RuntimeException e) {
+			Log.w(TAG, "Skipping unreadable message", e);
+			return null;
+		} finally {
+			parcel.recycle();
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	private static final class Record {
+
+		final byte[] data;
+
+		/**
+		 * Token of the TorchView that shows the message, or {@code null} if none does yet.
+		 */
+		Object owner;
+
+		Record(byte[] data, Object owner) {
+			this.data = data;
+			this.owner = owner;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Process-wide pools of recycled messages, one per message class, see {@link
+ * Message#obtain(String)}.
+ * <p/>
+ * Each pool holds at most {@link #MAX_POOL_SIZE} messages; further recycled messages are left to
+ * the garbage collector. Messages can be obtained on any thread, so access is synchronized.
+ */
+final class MessagePool {
+
+	private static final int MAX_POOL_SIZE = 16;
+
+	private static final HashMap<Class<?>, ArrayList<Message>> POOLS = new HashMap<Class<?>, ArrayList<Message>>();
+
+	private MessagePool() {
+	}
+
+	/**
+	 * Returns a recycled message of exactly {@code type}, or {@code null} if its pool is empty.
+	 */
+	static <T extends Message> T acquire(Class<T> type) {
+		synchronized (POOLS) {
+			ArrayList<Message> pool = POOLS.get(type);
+			if (pool == null || pool.isEmpty()) {
+				return null;
+			}
+			return type.cast(pool.remove(pool.size() - 1));
+		}
+	}
+
+	/**
+	 * Keeps {@code message} for reuse, unless the pool of its class is full.
+	 */
+	static void release(Message message) {
+		synchronized (POOLS) {
+			ArrayList<Message> pool = POOLS.get(message.getClass());
+			if (pool == null) {
+				pool = new ArrayList<Message>(MAX_POOL_SIZE);
+				POOLS.put(message.getClass(), pool);
+			}
+			if (pool.size() < MAX_POOL_SIZE) {
+				pool.add(message);
+			}
+		}
+	}
+}
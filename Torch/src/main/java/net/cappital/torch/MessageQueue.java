@@ -0,0 +1,453 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Queue of pending {@link Message Messages} used by {@link TorchView}, ordered by {@link
+ * Message#getPriority()} (highest first) and by insertion order within the same priority.
+ * <p/>
+ * Messages are kept in one FIFO bucket per priority, so {@link #offer(Message)} and {@link #poll()}
+ * only depend on the number of distinct priorities in use, not on the number of queued messages.
+ * The queue also keeps track of the total {@link Message#getEstimatedSize() estimated size} of its
+ * messages. This class is not thread-safe.
+ */
+final class MessageQueue implements Iterable<Message> {
+
+	/**
+	 * Non-empty buckets, keyed by priority.
+	 */
+	private final TreeMap<Integer, Bucket> buckets = new TreeMap<Integer, Bucket>();
+
+	private int size;
+
+	private long estimatedBytes;
+
+	/**
+	 * Number of queued messages with a time-to-live, as it was when they were queued.
+	 */
+	private int expiringCount;
+
+	/**
+	 * Insertion counter, used to find the oldest message across buckets.
+	 */
+	private long sequence;
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the sum of the estimated sizes of all queued messages, as they were when the messages
+	 * were queued.
+	 */
+	public long estimatedBytes() {
+		return estimatedBytes;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns whether queued messages have a {@link Message#setTimeToLive(long) time-to-live}, and
+	 * {@link #removeExpired(long, List)} may remove any.
+	 */
+	public boolean hasExpiringMessages() {
+		return expiringCount > 0;
+	}
+
+	private static int expiring(Message message) {
+		return message.getTimeToLive() > 0 ? 1 : 0;
+	}
+
+	/**
+	 * Appends {@code message} to the end of the bucket for its priority.
+	 */
+	public void offer(Message message) {
+		Integer priority = message.getPriority();
+		Bucket bucket = buckets.get(priority);
+		if (bucket == null) {
+			bucket = new Bucket(priority);
+			buckets.put(priority, bucket);
+		}
+		int bytes = message.getEstimatedSize();
+		bucket.addLast(message, bytes, sequence++);
+		estimatedBytes += bytes;
+		expiringCount += expiring(message);
+		size++;
+	}
+
+	/**
+	 * Returns, without removing, the oldest message with the highest priority.
+	 *
+	 * @return The next message, or {@code null} if the queue is empty.
+	 */
+	public Message peek() {
+		return size > 0 ? buckets.lastEntry().getValue().peekFirst() : null;
+	}
+
+	/**
+	 * Removes and returns the oldest message with the highest priority.
+	 *
+	 * @return The next message, or {@code null} if the queue is empty.
+	 */
+	public Message poll() {
+		if (size == 0) {
+			return null;
+		}
+		return pollFirst(buckets.lastEntry().getValue());
+	}
+
+	/**
+	 * Returns, without removing, the message that has been in the queue the longest.
+	 *
+	 * @return The oldest message, or {@code null} if the queue is empty.
+	 */
+	public Message peekOldest() {
+		Bucket oldest = oldestBucket();
+		return oldest != null ? oldest.peekFirst() : null;
+	}
+
+	/**
+	 * Removes and returns the message that has been in the queue the longest.
+	 *
+	 * @return The oldest message, or {@code null} if the queue is empty.
+	 */
+	public Message pollOldest() {
+		Bucket oldest = oldestBucket();
+		return oldest != null ? pollFirst(oldest) : null;
+	}
+
+	/**
+	 * Returns, without removing, the newest message with the lowest priority; the message that
+	 * {@link #poll()} would return last.
+	 *
+	 * @return The newest message with the lowest priority, or {@code null} if the queue is empty.
+	 */
+	public Message peekLowest() {
+		return size > 0 ? buckets.firstEntry().getValue().peekLast() : null;
+	}
+
+	/**
+	 * Removes and returns the newest message with the lowest priority.
+	 *
+	 * @return The newest message with the lowest priority, or {@code null} if the queue is empty.
+	 */
+	public Message pollLowest() {
+		if (size == 0) {
+			return null;
+		}
+		Map.Entry<Integer, Bucket> entry = buckets.firstEntry();
+		Bucket bucket = entry.getValue();
+		estimatedBytes -= bucket.lastSize();
+		Message message = bucket.pollLast();
+		if (bucket.size() == 0) {
+			buckets.remove(entry.getKey());
+		}
+		expiringCount = Math.max(0, expiringCount - expiring(message));
+		size--;
+		return message;
+	}
+
+	private Bucket oldestBucket() {
+		Bucket oldest = null;
+		for (Bucket bucket : buckets.values()) {
+			if (oldest == null || bucket.firstSequence() < oldest.firstSequence()) {
+				oldest = bucket;
+			}
+		}
+		return oldest;
+	}
+
+	private Message pollFirst(Bucket bucket) {
+		estimatedBytes -= bucket.firstSize();
+		Message message = bucket.pollFirst();
+		if (bucket.size() == 0) {
+			buckets.remove(bucket.priority);
+		}
+		expiringCount = Math.max(0, expiringCount - expiring(message));
+		size--;
+		return message;
+	}
+
+	/**
+	 * Puts {@code newMessage} in the position of {@code oldMessage}, regardless of the priority of
+	 * {@code newMessage}.
+	 *
+	 * @return {@code true} if {@code oldMessage} was queued and has been replaced.
+	 */
+	public boolean replace(Message oldMessage, Message newMessage) {
+		// look in the bucket for its priority first; a message that replaced another earlier may
+		// sit in a different bucket
+		Bucket bucket = buckets.get(oldMessage.getPriority());
+		int index = bucket != null ? bucket.indexOf(oldMessage) : -1;
+		if (index < 0) {
+			for (Bucket b : buckets.values()) {
+				index = b.indexOf(oldMessage);
+				if (index >= 0) {
+					bucket = b;
+					break;
+				}
+			}
+		}
+		if (index < 0) {
+			return false;
+		}
+
+		int bytes = newMessage.getEstimatedSize();
+		estimatedBytes += bytes - bucket.sizeAt(index);
+		expiringCount = Math.max(0, expiringCount + expiring(newMessage) - expiring(oldMessage));
+		bucket.set(index, newMessage, bytes);
+		return true;
+	}
+
+	/**
+	 * Removes all messages that have passed their time-to-live at {@code now}. Each bucket is
+	 * compacted in a single pass, so a burst of messages that expire together costs no more than one
+	 * walk over the queue.
+	 *
+	 * @param now     Current time in {@link android.os.SystemClock#uptimeMillis()}.
+	 * @param removed Receives the removed messages.
+	 *
+	 * @return Whether messages with a time-to-live remain in the queue.
+	 */
+	public boolean removeExpired(long now, List<Message> removed) {
+		// recounted on the way, which also corrects for time-to-lives changed while queued
+		expiringCount = 0;
+		Iterator<Bucket> iterator = buckets.values().iterator();
+		while (iterator.hasNext()) {
+			Bucket bucket = iterator.next();
+			int before = bucket.size();
+			estimatedBytes -= bucket.removeExpired(now, removed);
+			size -= before - bucket.size();
+			for (int i = 0; i < bucket.size(); i++) {
+				expiringCount += expiring(bucket.get(i));
+			}
+			if (bucket.size() == 0) {
+				iterator.remove();
+			}
+		}
+		return expiringCount > 0;
+	}
+
+	public void clear() {
+		buckets.clear();
+		size = 0;
+		estimatedBytes = 0;
+		expiringCount = 0;
+	}
+
+	/**
+	 * Iterates the queue in the order in which {@link #poll()} would return the messages.
+	 */
+	@Override
+	public Iterator<Message> iterator() {
+		final Iterator<Bucket> bucketIterator = buckets.descendingMap().values().iterator();
+
+		return new Iterator<Message>() {
+			private Bucket bucket;
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				while (bucket == null || index >= bucket.size()) {
+					if (!bucketIterator.hasNext()) {
+						return false;
+					}
+					bucket = bucketIterator.next();
+					index = 0;
+				}
+				return true;
+			}
+
+			@Override
+			public Message next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return bucket.get(index++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Growable ring buffer holding the messages of a single priority, along with their estimated
+	 * sizes and insertion sequence numbers.
+	 */
+	static final class Bucket {
+
+		final int priority;
+
+		private Message[] elements = new Message[8];
+
+		private int[] sizes = new int[8];
+
+		private long[] sequences = new long[8];
+
+		private int head;
+
+		private int size;
+
+		Bucket(int priority) {
+			this.priority = priority;
+		}
+
+		int size() {
+			return size;
+		}
+
+		private int slot(int index) {
+			return (head + index) & (elements.length - 1);
+		}
+
+		Message get(int index) {
+			return elements[slot(index)];
+		}
+
+		int sizeAt(int index) {
+			return sizes[slot(index)];
+		}
+
+		void set(int index, Message message, int bytes) {
+			elements[slot(index)] = message;
+			sizes[slot(index)] = bytes;
+		}
+
+		int indexOf(Message message) {
+			for (int i = 0; i < size; i++) {
+				if (get(i) == message) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		void addLast(Message message, int bytes, long sequence) {
+			if (size == elements.length) {
+				grow();
+			}
+			int slot = slot(size);
+			elements[slot] = message;
+			sizes[slot] = bytes;
+			sequences[slot] = sequence;
+			size++;
+		}
+
+		private void grow() {
+			int capacity = elements.length << 1;
+			Message[] grownElements = new Message[capacity];
+			int[] grownSizes = new int[capacity];
+			long[] grownSequences = new long[capacity];
+			for (int i = 0; i < size; i++) {
+				int slot = slot(i);
+				grownElements[i] = elements[slot];
+				grownSizes[i] = sizes[slot];
+				grownSequences[i] = sequences[slot];
+			}
+			elements = grownElements;
+			sizes = grownSizes;
+			sequences = grownSequences;
+			head = 0;
+		}
+
+		Message peekFirst() {
+			return size > 0 ? elements[head] : null;
+		}
+
+		Message peekLast() {
+			return size > 0 ? get(size - 1) : null;
+		}
+
+		int firstSize() {
+			return sizes[head];
+		}
+
+		int lastSize() {
+			return sizeAt(size - 1);
+		}
+
+		long firstSequence() {
+			return sequences[head];
+		}
+
+		Message pollFirst() {
+			if (size == 0) {
+				return null;
+			}
+			Message message = elements[head];
+			elements[head] = null;
+			head = (head + 1) & (elements.length - 1);
+			size--;
+			return message;
+		}
+
+		/**
+		 * Removes the elements that have passed their time-to-live at {@code now} in one pass, keeping
+		 * the order of the others.
+		 *
+		 * @param removed Receives the removed messages.
+		 *
+		 * @return The sum of the estimated sizes of the removed messages.
+		 */
+		long removeExpired(long now, List<Message> removed) {
+			long removedBytes = 0;
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				int slot = slot(i);
+				Message message = elements[slot];
+				if (message.isExpired(now)) {
+					removedBytes += sizes[slot];
+					removed.add(message);
+				} else {
+					if (kept != i) {
+						int target = slot(kept);
+						elements[target] = message;
+						sizes[target] = sizes[slot];
+						sequences[target] = sequences[slot];
+					}
+					kept++;
+				}
+			}
+			for (int i = kept; i < size; i++) {
+				elements[slot(i)] = null;
+			}
+			size = kept;
+			return removedBytes;
+		}
+
+		Message pollLast() {
+			if (size == 0) {
+				return null;
+			}
+			int slot = slot(size - 1);
+			Message message = elements[slot];
+			elements[slot] = null;
+			size--;
+			return message;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.annotation.TargetApi;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.nineoldandroids.animation.Animator;
+import com.nineoldandroids.animation.AnimatorListenerAdapter;
+import com.nineoldandroids.animation.ValueAnimator;
+import com.nineoldandroids.view.ViewHelper;
+
+/**
+ * Resize animation of {@link TorchView} and {@link TorchManager}: slides Views from their positions
+ * before a layout to the ones they have after it with translations, without laying out again. On
+ * API level 18 and up, the part of the container that lies outside of its previous bounds is
+ * clipped while the animation runs.
+ */
+final class MoveAnimation {
+
+	/**
+	 * The container that is resized.
+	 */
+	interface Host {
+		/**
+		 * Returns whether {@code view} is still shown; Views that have been removed meanwhile are not
+		 * moved.
+		 */
+		boolean isShown(View view);
+
+		/**
+		 * Called after each frame of the animation, and once more after the last one.
+		 */
+		void onMoved();
+	}
+
+	private final ViewGroup container;
+
+	private final Host host;
+
+	/**
+	 * Top inset of the clip bounds set by {@link #clipTop(int)}.
+	 */
+	private int clipInset = 0;
+
+	private final Rect clipBounds = new Rect();
+
+	MoveAnimation(ViewGroup container, Host host) {
+		this.container = container;
+		this.host = host;
+	}
+
+	/**
+	 * Returns the top of the visible part of the container, relative to its parent.
+	 */
+	int getVisibleTop() {
+		return container.getTop() + clipInset;
+	}
+
+	/**
+	 * Returns an animator that slides {@code views} by {@code offsets} back to the positions of the
+	 * last layout.
+	 *
+	 * @param fromTop Previous {@link #getVisibleTop() visible top} of the container.
+	 * @param offsets Previous top of each View minus its current top.
+	 */
+	ValueAnimator create(int fromTop, final View[] views, final int[] offsets) {
+		// hide the part of the container that lies outside of its previous bounds
+		final int topInset = Math.max(0, fromTop - container.getTop());
+
+		ValueAnimator moveAnim = ValueAnimator.ofFloat(1f, 0f);
+		moveAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+			@Override
+			public void onAnimationUpdate(ValueAnimator valueAnimator) {
+				float remaining = (Float) valueAnimator.getAnimatedValue();
+				for (int i = 0; i < views.length; i++) {
+					if (host.isShown(views[i])) {
+						ViewHelper.setTranslationY(views[i], offsets[i] * remaining);
+					}
+				}
+				if (topInset > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+					clipTop(Math.round(topInset * remaining));
+				}
+				host.onMoved();
+			}
+		});
+		moveAnim.addListener(new AnimatorListenerAdapter() {
+			@Override
+			public void onAnimationEnd(Animator animation) {
+				for (View view : views) {
+					if (host.isShown(view)) {
+						ViewHelper.setTranslationY(view, 0);
+					}
+				}
+				if (topInset > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+					container.setClipBounds(null);
+					clipInset = 0;
+				}
+				host.onMoved();
+			}
+		});
+
+		return moveAnim;
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	private void clipTop(int inset) {
+		clipInset = inset;
+		clipBounds.set(0, inset, container.getWidth(), container.getHeight());
+		container.setClipBounds(clipBounds);
+	}
+}
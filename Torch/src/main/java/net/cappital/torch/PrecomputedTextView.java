@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * Lightweight View for {@link TorchView.ViewBuilder ViewBuilders} that shows text with a layout
+ * that has been computed ahead of time, such as {@link Message#getContentLayout()} or {@link
+ * TitleMessage#getTitleLayout()}, so the text is not measured again on the main thread.
+ * <p/>
+ * When no precomputed layout is given, or it does not fit the width of this View, the text is laid
+ * out here like a plain TextView would, or like the default message View if {@link
+ * #setSingleLine(boolean)} is set. This View does not support styling beyond its {@link
+ * #getTextPaint() paint}; use a TextView if you need more.
+ * <p/>
+ * <B>Usage:</B> in {@code bindView()}, call {@code setText(message.getContent(),
+ * message.getContentLayout())}.
+ */
+public class PrecomputedTextView extends View {
+
+	private final TextPaint textPaint;
+
+	private CharSequence text;
+
+	private Layout precomputedLayout;
+
+	private Layout layout;
+
+	private boolean singleLine = false;
+
+	public PrecomputedTextView(Context context) {
+		this(context, null);
+	}
+
+	public PrecomputedTextView(Context context, AttributeSet attrs) {
+		super(context, attrs);
+
+		// look like a default TextView
+		TextView textView = new TextView(context);
+		textPaint = new TextPaint(textView.getPaint());
+		textPaint.setColor(textView.getCurrentTextColor());
+	}
+
+	/**
+	 * Returns the paint that is used for text without a precomputed layout. Call {@link
+	 * #requestLayout()} after changing it.
+	 */
+	public TextPaint getTextPaint() {
+		return textPaint;
+	}
+
+	/**
+	 * Shows text without a precomputed layout on a single line, ellipsized at the end, like the
+	 * default message View and the layouts of {@link Message#getContentLayout()}.
+	 *
+	 * @param singleLine {@code true} to show a single line, {@code false} to wrap the text.
+	 */
+	public void setSingleLine(boolean singleLine) {
+		if (this.singleLine != singleLine) {
+			this.singleLine = singleLine;
+			this.layout = null;
+			requestLayout();
+			invalidate();
+		}
+	}
+
+	/**
+	 * Shows {@code text}, using {@code precomputedLayout} if it fits.
+	 *
+	 * @param text              The text to show.
+	 * @param precomputedLayout A layout of {@code text}, or {@code null}.
+	 */
+	public void setText(CharSequence text, Layout precomputedLayout) {
+		this.text = text;
+		this.precomputedLayout = precomputedLayout;
+		this.layout = null;
+		requestLayout();
+		invalidate();
+	}
+
+	public CharSequence getText() {
+		return text;
+	}
+
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+		int horizontalPadding = getPaddingLeft() + getPaddingRight();
+		int textWidth;
+		if (widthMode == MeasureSpec.UNSPECIFIED) {
+			textWidth = precomputedLayout != null ? precomputedLayout.getWidth()
+					: (int) Math.ceil(Layout.getDesiredWidth(text != null ? text : "", textPaint));
+		} else {
+			textWidth = Math.max(0, MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding);
+		}
+
+		if (precomputedLayout != null && precomputedLayout.getWidth() == textWidth) {
+			layout = precomputedLayout;
+		} else if (layout == null || layout == precomputedLayout || layout.getWidth() != textWidth) {
+			if (singleLine) {
+				layout = Message.buildTextLayout(text != null ? text : "", textPaint, textWidth);
+			} else {
+				layout = new StaticLayout(text != null ? text : "", textPaint, textWidth,
+						Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+			}
+		}
+
+		int width = resolveSize(textWidth + horizontalPadding, widthMeasureSpec);
+		int height = resolveSize(layout.getHeight() + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+		setMeasuredDimension(width, height);
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		if (layout == null) {
+			return;
+		}
+		int saveCount = canvas.save();
+		canvas.translate(getPaddingLeft(), getPaddingTop());
+		layout.draw(canvas);
+		canvas.restoreToCount(saveCount);
+	}
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+import com.nineoldandroids.animation.Animator;
+import com.nineoldandroids.animation.AnimatorListenerAdapter;
+import com.nineoldandroids.animation.ValueAnimator;
+import com.nineoldandroids.view.ViewHelper;
+import com.nineoldandroids.view.ViewPropertyAnimator;
+
+/**
+ * Swipe-to-dismiss for all direct children of a container, driven from the container's {@link
+ * ViewGroup#onInterceptTouchEvent(MotionEvent)} and {@link View#onTouchEvent(MotionEvent)}.
+ * <p/>
+ * Unlike {@link SwipeDismissTouchListener}, one instance serves every child: the {@link
+ * ViewConfiguration} values are read once and a single {@link VelocityTracker} is reused for all
+ * gestures. Once a swipe is detected the container intercepts the gesture, so the framework sends
+ * {@link MotionEvent#ACTION_CANCEL} to the child and no events have to be synthesized. Tracking a
+ * gesture does not allocate.
+ * <p/>
+ * By default the gap left by a dismissed child is closed with {@link #COLLAPSE_TRANSLATE}, which
+ * leaves it to the resize animation of the container.
+ */
+final class SwipeDismissHelper {
+
+	/**
+	 * Collapses the dismissed child by animating its height, which lays out the container and all
+	 * of its ancestors on every frame.
+	 */
+	static final int COLLAPSE_RELAYOUT = 0;
+
+	/**
+	 * Removes the dismissed child as soon as it has slid away, and lets the container close the gap
+	 * like it does for any removal, so the layout changes only once and all of its content moves
+	 * together.
+	 */
+	static final int COLLAPSE_TRANSLATE = 1;
+
+	/**
+	 * Decides which children can be swiped, and removes them once they are.
+	 */
+	interface Callbacks {
+		/**
+		 * Called to determine whether {@code view} can be dismissed.
+		 */
+		boolean canDismiss(View view);
+
+		/**
+		 * Called when the user has swiped {@code view} away.
+		 *
+		 * @param collapsed Whether the gap of {@code view} has been closed already; if not, the
+		 *                  container should animate its other children into it.
+		 */
+		void onDismiss(View view, boolean collapsed);
+	}
+
+	private final ViewGroup container;
+
+	private final Callbacks callbacks;
+
+	/**
+	 * Tracks the slide and collapse animations, so they end when the container is detached.
+	 */
+	private final CancellationScope scope;
+
+	// Cached ViewConfiguration and system-wide constant values
+	private final int slop;
+	private final int minFlingVelocity;
+	private final int maxFlingVelocity;
+	private final long animationTime;
+
+	private int collapseMode = COLLAPSE_TRANSLATE;
+
+	private VelocityTracker velocityTracker;
+
+	// Transient properties of the current gesture
+	private View swipedView;
+	private int swipedViewWidth;
+	private float downX;
+	private boolean swiping;
+
+	SwipeDismissHelper(ViewGroup container, CancellationScope scope, Callbacks callbacks) {
+		ViewConfiguration vc = ViewConfiguration.get(container.getContext());
+		this.container = container;
+		this.scope = scope;
+		this.callbacks = callbacks;
+		this.slop = vc.getScaledTouchSlop();
+		this.minFlingVelocity = vc.getScaledMinimumFlingVelocity() * 16;
+		this.maxFlingVelocity = vc.getScaledMaximumFlingVelocity();
+		this.animationTime = container.getResources().getInteger(android.R.integer.config_shortAnimTime);
+	}
+
+	/**
+	 * @param collapseMode Either {@link #COLLAPSE_TRANSLATE} or {@link #COLLAPSE_RELAYOUT}.
+	 */
+	void setCollapseMode(int collapseMode) {
+		this.collapseMode = collapseMode;
+	}
+
+	/**
+	 * @return {@code true} if the container should intercept the gesture from its children.
+	 */
+	boolean onInterceptTouchEvent(MotionEvent event) {
+		switch (event.getActionMasked()) {
+			case MotionEvent.ACTION_DOWN:
+				startGesture(event);
+				return false;
+
+			case MotionEvent.ACTION_MOVE:
+				return trackMove(event);
+
+			case MotionEvent.ACTION_UP:
+			case MotionEvent.ACTION_CANCEL:
+				resetGesture();
+				return false;
+		}
+		return swiping;
+	}
+
+	/**
+	 * Handles touches that no child consumed, and all touches of an intercepted gesture.
+	 *
+	 * @return {@code true} if the event has been consumed.
+	 */
+	boolean onTouchEvent(MotionEvent event) {
+		switch (event.getActionMasked()) {
+			case MotionEvent.ACTION_DOWN:
+				// no child took the gesture; keep receiving it if a dismissable child was hit
+				return startGesture(event);
+
+			case MotionEvent.ACTION_MOVE:
+				trackMove(event);
+				return swipedView != null;
+
+			case MotionEvent.ACTION_UP:
+				if (swipedView == null) {
+					return false;
+				}
+				velocityTracker.addMovement(event);
+				finishSwipe(event.getRawX() - downX);
+				resetGesture();
+				return true;
+
+			case MotionEvent.ACTION_CANCEL:
+				if (swipedView == null) {
+					return false;
+				}
+				if (swiping) {
+					restore(swipedView);
+				}
+				resetGesture();
+				return true;
+		}
+		return swipedView != null;
+	}
+
+	/**
+	 * Releases the {@link VelocityTracker}; call when the container is detached from its window.
+	 */
+	void release() {
+		resetGesture();
+		if (velocityTracker != null) {
+			velocityTracker.recycle();
+			velocityTracker = null;
+		}
+	}
+
+	private boolean startGesture(MotionEvent event) {
+		resetGesture();
+		View view = findChildAt(event.getX(), event.getY());
+		if (view == null || !callbacks.canDismiss(view)) {
+			return false;
+		}
+
+		if (velocityTracker == null) {
+			velocityTracker = VelocityTracker.obtain();
+		} else {
+			velocityTracker.clear();
+		}
+		velocityTracker.addMovement(event);
+		swipedView = view;
+		swipedViewWidth = Math.max(1, view.getWidth()); // 1 and not 0 to prevent dividing by zero
+		downX = event.getRawX();
+		return true;
+	}
+
+	/**
+	 * Moves the swiped child along with the gesture once it passes the touch slop.
+	 *
+	 * @return {@code true} if the gesture is a swipe.
+	 */
+	private boolean trackMove(MotionEvent event) {
+		if (swipedView == null) {
+			return false;
+		}
+
+		velocityTracker.addMovement(event);
+		float deltaX = event.getRawX() - downX;
+		if (!swiping && Math.abs(deltaX) > slop) {
+			swiping = true;
+			ViewParent parent = container.getParent();
+			if (parent != null) {
+				parent.requestDisallowInterceptTouchEvent(true);
+			}
+		}
+
+		if (swiping) {
+			ViewHelper.setTranslationX(swipedView, deltaX);
+			ViewHelper.setAlpha(swipedView, Math.max(0f, Math.min(1f,
+					1f - 2f * Math.abs(deltaX) / swipedViewWidth)));
+		}
+		return swiping;
+	}
+
+	private void finishSwipe(float deltaX) {
+		velocityTracker.computeCurrentVelocity(1000);
+		float velocityX = velocityTracker.getXVelocity();
+		float absVelocityX = Math.abs(velocityX);
+		float absVelocityY = Math.abs(velocityTracker.getYVelocity());
+		boolean dismiss = false;
+		boolean dismissRight = false;
+		if (Math.abs(deltaX) > swipedViewWidth / 2) {
+			dismiss = true;
+			dismissRight = deltaX > 0;
+		} else if (swiping && minFlingVelocity <= absVelocityX && absVelocityX <= maxFlingVelocity
+				&& absVelocityY < absVelocityX) {
+			// dismiss only if flinging in the same direction as dragging
+			dismiss = (velocityX < 0) == (deltaX < 0);
+			dismissRight = velocityX > 0;
+		}
+
+		if (dismiss) {
+			final View view = swipedView;
+			final CancellationScope.Cancellable slide = trackSlide(view);
+			ViewPropertyAnimator.animate(view)
+					.translationX(dismissRight ? swipedViewWidth : -swipedViewWidth)
+					.alpha(0)
+					.setDuration(animationTime)
+					.setListener(new AnimatorListenerAdapter() {
+						@Override
+						public void onAnimationEnd(Animator animation) {
+							scope.remove(slide);
+							performDismiss(view);
+						}
+					});
+		} else if (swiping) {
+			restore(swipedView);
+		}
+	}
+
+	private void restore(View view) {
+		final CancellationScope.Cancellable slide = trackSlide(view);
+		ViewPropertyAnimator.animate(view)
+				.translationX(0)
+				.alpha(1)
+				.setDuration(animationTime)
+				.setListener(new AnimatorListenerAdapter() {
+					@Override
+					public void onAnimationEnd(Animator animation) {
+						scope.remove(slide);
+					}
+				});
+	}
+
+	/**
+	 * Adds the slide animation that is about to start for {@code view} to {@link #scope}.
+	 */
+	private CancellationScope.Cancellable trackSlide(final View view) {
+		CancellationScope.Cancellable slide = new CancellationScope.Cancellable() {
+			@Override
+			public void cancel() {
+				ViewPropertyAnimator.animate(view).cancel();
+			}
+		};
+		scope.add(slide);
+		return slide;
+	}
+
+	private void performDismiss(View view) {
+		if (collapseMode == COLLAPSE_TRANSLATE) {
+			callbacks.onDismiss(view, false);
+			ViewHelper.setAlpha(view, 1f);
+			ViewHelper.setTranslationX(view, 0);
+		} else {
+			collapseByLayout(view);
+		}
+	}
+
+	private void collapseByLayout(final View view) {
+		// Animate the dismissed view to zero-height and then fire the dismiss callback.
+		// This triggers layout on each animation frame; see COLLAPSE_TRANSLATE.
+
+		final ViewGroup.LayoutParams lp = view.getLayoutParams();
+		final int originalHeight = view.getHeight();
+
+		ValueAnimator animator = ValueAnimator.ofInt(originalHeight, 1).setDuration(animationTime);
+
+		animator.addListener(new AnimatorListenerAdapter() {
+			@Override
+			public void onAnimationEnd(Animator animation) {
+				callbacks.onDismiss(view, true);
+				// Reset view presentation
+				ViewHelper.setAlpha(view, 1f);
+				ViewHelper.setTranslationX(view, 0);
+				lp.height = originalHeight;
+				view.setLayoutParams(lp);
+			}
+		});
+
+		animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+			@Override
+			public void onAnimationUpdate(ValueAnimator valueAnimator) {
+				lp.height = (Integer) valueAnimator.getAnimatedValue();
+				view.setLayoutParams(lp);
+			}
+		});
+
+		scope.track(animator);
+		animator.start();
+	}
+
+	private void resetGesture() {
+		swipedView = null;
+		swipedViewWidth = 1;
+		downX = 0;
+		swiping = false;
+	}
+
+	/**
+	 * Finds the topmost visible child under the point, in container coordinates.
+	 */
+	private View findChildAt(float x, float y) {
+		for (int i = container.getChildCount() - 1; i >= 0; i--) {
+			View child = container.getChildAt(i);
+			if (child.getVisibility() != View.VISIBLE) {
+				continue;
+			}
+			float left = child.getLeft() + ViewHelper.getTranslationX(child);
+			float top = child.getTop() + ViewHelper.getTranslationY(child);
+			if (x >= left && x < left + child.getWidth() && y >= top && y < top + child.getHeight()) {
+				return child;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.text.TextPaint;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Computes the text layouts of messages on a background thread, see {@link
+ * Message#precomputeLayouts(TextPaint, int)}.
+ * <p/>
+ * All instances share one low-priority thread, which handles messages in the order in which they
+ * are submitted. Precomputing does not hold up a message: if its layouts are not ready by the time
+ * it is displayed, they are measured on the main thread as usual.
+ */
+final class TextLayoutPrecomputer {
+
+	private static final Executor EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "TorchTextLayout");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
+	/**
+	 * Paint that each message gets a copy of; never modified after construction.
+	 */
+	private final TextPaint paint;
+
+	private volatile int width;
+
+	/**
+	 * @param paint Paint to measure with. It is copied, so the caller may keep using it.
+	 * @param width Available width for the text, in pixels.
+	 */
+	TextLayoutPrecomputer(TextPaint paint, int width) {
+		this.paint = new TextPaint(paint);
+		this.width = width;
+	}
+
+	/**
+	 * Sets the width for messages that are submitted from now on. Can be called on any thread.
+	 */
+	void setWidth(int width) {
+		this.width = width;
+	}
+
+	/**
+	 * Computes the layouts of {@code message} in the background. Can be called on any thread.
+	 */
+	void submit(final Message message) {
+		final int width = this.width;
+		EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				// a paint per message: layouts keep a reference to the paint they were built with
+				message.precomputeLayouts(new TextPaint(paint), width);
+			}
+		});
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.View;
+
+import com.nineoldandroids.view.ViewHelper;
+
+/**
+ * A text-only message that {@link TorchView} draws itself, instead of adding a child View for it.
+ * See {@link TorchView#setCanvasRendering(boolean)}.
+ * <p/>
+ * A TextRow is never attached to a window, so it is never measured, laid out or drawn by the
+ * framework. It only holds the state of one row: the animations of its message target it like any
+ * message View, and TorchView positions it with {@link #layout(int, int, int, int)} and draws its
+ * cached text layout at its animated offset and alpha. It looks like {@code
+ * R.layout.default_message}: a single line of text, ellipsized at the end.
+ */
+final class TextRow extends View {
+
+	private final int paddingHorizontal;
+
+	private final int paddingVertical;
+
+	private CharSequence text;
+
+	/**
+	 * Layout of {@link #text} computed ahead of time, see {@link Message#getContentLayout()}.
+	 */
+	private Layout precomputedLayout;
+
+	/**
+	 * Layout of {@link #text}, or {@code null} if it has to be built again.
+	 */
+	private Layout layout;
+
+	private int layoutWidth = -1;
+
+	private int rowHeight;
+
+	TextRow(Context context) {
+		super(context);
+
+		Resources r = context.getResources();
+		paddingHorizontal = r.getDimensionPixelSize(R.dimen.torch_message_padding_horizontal);
+		paddingVertical = r.getDimensionPixelSize(R.dimen.torch_message_padding_vertical);
+	}
+
+	/**
+	 * Shows the contents of {@code message} in this row, or nothing if {@code message} is {@code
+	 * null}.
+	 */
+	void bind(Message message) {
+		CharSequence text = message != null ? message.getContent() : null;
+		Layout precomputedLayout = message != null ? message.getContentLayout() : null;
+		if (!TextUtils.equals(this.text, text) || precomputedLayout != this.precomputedLayout) {
+			this.text = text;
+			this.precomputedLayout = precomputedLayout;
+			layout = null;
+		}
+	}
+
+	/**
+	 * Returns the height of this row at {@code width}, building its text layout if the text or the
+	 * width have changed since the last call. A precomputed layout is used if it has the right
+	 * width; it has been built the same way.
+	 */
+	int measureRow(int width, TextPaint paint) {
+		int textWidth = Math.max(0, width - 2 * paddingHorizontal);
+		if (layout == null || layoutWidth != textWidth) {
+			if (precomputedLayout != null && precomputedLayout.getWidth() == textWidth) {
+				layout = precomputedLayout;
+			} else {
+				layout = Message.buildTextLayout(text != null ? text : "", paint, textWidth);
+			}
+			layoutWidth = textWidth;
+			rowHeight = layout.getHeight() + 2 * paddingVertical;
+		}
+		return rowHeight;
+	}
+
+	/**
+	 * Returns the height computed by the last {@link #measureRow(int, TextPaint)}.
+	 */
+	int getRowHeight() {
+		return rowHeight;
+	}
+
+	/**
+	 * Draws this row at its position, translation and alpha. The alpha of the paint of the text
+	 * layout is restored afterwards.
+	 */
+	void drawRow(Canvas canvas) {
+		float alpha = ViewHelper.getAlpha(this);
+		if (layout == null || alpha <= 0f) {
+			return;
+		}
+
+		TextPaint paint = layout.getPaint();
+		int paintAlpha = paint.getAlpha();
+		paint.setAlpha(Math.round(Color.alpha(paint.getColor()) * Math.min(alpha, 1f)));
+
+		int saveCount = canvas.save();
+		canvas.translate(getLeft() + ViewHelper.getTranslationX(this) + paddingHorizontal,
+				getTop() + ViewHelper.getTranslationY(this) + paddingVertical);
+		layout.draw(canvas);
+		canvas.restoreToCount(saveCount);
+
+		paint.setAlpha(paintAlpha);
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Hashed timing wheel that drives any number of timers from a single {@link Handler} callback.
+ * <p/>
+ * Timers are hashed into slots by the tick in which they expire and kept in doubly linked lists, so
+ * scheduling and cancelling are O(1). The Handler callback is only armed for the next tick that has
+ * an expiring timer, instead of posting one Runnable per timer. Timers never fire early, but may
+ * fire up to one tick late.
+ * <p/>
+ * All methods must be called on the thread of the Handler.
+ */
+final class TimingWheel<T> {
+
+	/**
+	 * Receives the items of expired timers.
+	 */
+	interface Callback<T> {
+		void onExpired(T item);
+	}
+
+	/**
+	 * Handle to a scheduled timer, used to cancel it.
+	 */
+	static final class Timeout<T> {
+		private T item;
+		private long deadlineTick;
+		private int slot;
+		private Timeout<T> previous;
+		private Timeout<T> next;
+		private boolean scheduled;
+
+		T getItem() {
+			return item;
+		}
+	}
+
+	private final Handler handler;
+
+	private final long tickDuration;
+
+	private final Timeout<T>[] slots;
+
+	private final int mask;
+
+	private final Callback<T> callback;
+
+	private int size;
+
+	/**
+	 * Last tick for which all timers have been processed.
+	 */
+	private long currentTick;
+
+	/**
+	 * Tick for which the Handler callback is armed, or -1 if it is not armed.
+	 */
+	private long armedTick = -1;
+
+	private final Runnable tick = new Runnable() {
+		@Override
+		public void run() {
+			armedTick = -1;
+			advance();
+		}
+	};
+
+	/**
+	 * @param handler      The Handler to post the tick callback to.
+	 * @param tickDuration Resolution of the timers, in milliseconds.
+	 * @param wheelSize    Number of slots; rounded up to a power of two.
+	 * @param callback     Receives the items of expired timers.
+	 */
+	@SuppressWarnings("unchecked")
+	TimingWheel(Handler handler, long tickDuration, int wheelSize, Callback<T> callback) {
+		int capacity = 1;
+		while (capacity < wheelSize) {
+			capacity <<= 1;
+		}
+
+		this.handler = handler;
+		this.tickDuration = tickDuration;
+		this.slots = (Timeout<T>[]) new Timeout<?>[capacity];
+		this.mask = capacity - 1;
+		this.callback = callback;
+		this.currentTick = SystemClock.uptimeMillis() / tickDuration;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Schedules a timer that passes {@code item} to the callback after {@code delay}
+	 * milliseconds.
+	 *
+	 * @return Handle to cancel the timer with.
+	 */
+	Timeout<T> schedule(T item, long delay) {
+		if (size == 0) {
+			// wheel has been idle: don't replay the ticks that passed in the meantime
+			currentTick = SystemClock.uptimeMillis() / tickDuration;
+		}
+
+		Timeout<T> timeout = new Timeout<T>();
+		timeout.item = item;
+		// round up, so timers never fire early
+		timeout.deadlineTick = Math.max(currentTick + 1,
+				(SystemClock.uptimeMillis() + delay + tickDuration - 1) / tickDuration);
+		timeout.slot = (int) (timeout.deadlineTick & mask);
+		link(timeout);
+
+		if (armedTick < 0 || timeout.deadlineTick < armedTick) {
+			arm(timeout.deadlineTick);
+		}
+		return timeout;
+	}
+
+	/**
+	 * Cancels a pending timer. Cancelling a timer that has fired or has been cancelled already does
+	 * nothing.
+	 */
+	void cancel(Timeout<T> timeout) {
+		if (timeout != null && timeout.scheduled) {
+			unlink(timeout);
+			if (size == 0) {
+				disarm();
+			}
+		}
+	}
+
+	/**
+	 * Cancels all pending timers.
+	 */
+	void clear() {
+		for (int i = 0; i < slots.length; i++) {
+			Timeout<T> timeout = slots[i];
+			while (timeout != null) {
+				Timeout<T> next = timeout.next;
+				timeout.scheduled = false;
+				timeout.item = null;
+				timeout.previous = null;
+				timeout.next = null;
+				timeout = next;
+			}
+			slots[i] = null;
+		}
+		size = 0;
+		disarm();
+	}
+
+	private void link(Timeout<T> timeout) {
+		Timeout<T> head = slots[timeout.slot];
+		timeout.previous = null;
+		timeout.next = head;
+		if (head != null) {
+			head.previous = timeout;
+		}
+		slots[timeout.slot] = timeout;
+		timeout.scheduled = true;
+		size++;
+	}
+
+	private void unlink(Timeout<T> timeout) {
+		if (timeout.previous != null) {
+			timeout.previous.next = timeout.next;
+		} else {
+			slots[timeout.slot] = timeout.next;
+		}
+		if (timeout.next != null) {
+			timeout.next.previous = timeout.previous;
+		}
+		timeout.previous = null;
+		timeout.next = null;
+		timeout.scheduled = false;
+		size--;
+	}
+
+	private void arm(long deadlineTick) {
+		handler.removeCallbacks(tick);
+		armedTick = deadlineTick;
+		handler.postAtTime(tick, deadlineTick * tickDuration);
+	}
+
+	private void disarm() {
+		if (armedTick >= 0) {
+			handler.removeCallbacks(tick);
+			armedTick = -1;
+		}
+	}
+
+	/**
+	 * Fires all timers up to the current tick, then arms the callback for the next deadline.
+	 */
+	private void advance() {
+		long nowTick = SystemClock.uptimeMillis() / tickDuration;
+
+		// visit each slot at most once, even if the callback was delayed for several rotations
+		long lastTick = Math.min(nowTick, currentTick + slots.length);
+		while (currentTick < lastTick && size > 0) {
+			currentTick++;
+			Timeout<T> timeout = slots[(int) (currentTick & mask)];
+			while (timeout != null) {
+				Timeout<T> next = timeout.next;
+				if (timeout.deadlineTick <= nowTick) {
+					unlink(timeout);
+					T item = timeout.item;
+					timeout.item = null;
+					callback.onExpired(item);
+				}
+				timeout = next;
+			}
+		}
+		currentTick = nowTick;
+
+		if (size > 0) {
+			arm(nextDeadline());
+		}
+	}
+
+	/**
+	 * Finds the next tick with an expiring timer, scanning at most one rotation of the wheel.
+	 */
+	private long nextDeadline() {
+		long nextDeadline = Long.MAX_VALUE;
+		for (long t = currentTick + 1; t <= currentTick + slots.length; t++) {
+			Timeout<T> timeout = slots[(int) (t & mask)];
+			while (timeout != null) {
+				nextDeadline = Math.min(nextDeadline, timeout.deadlineTick);
+				timeout = timeout.next;
+			}
+			if (nextDeadline <= t) {
+				return nextDeadline;
+			}
+		}
+		// only timers in later rotations: check again after one full rotation at most
+		return Math.min(nextDeadline, currentTick + slots.length);
+	}
+}
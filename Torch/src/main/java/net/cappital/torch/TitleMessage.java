@@ -16,6 +16,8 @@
 package net.cappital.torch;
 
 import android.os.Parcel;
+import android.text.Layout;
+import android.text.TextPaint;
 
 /**
  * Basic message with a title. This class is mainly here to demonstrate how to extend {@link
@@ -25,20 +27,69 @@ public class TitleMessage extends Message {
 
 	private String title;
 
+	private volatile Layout titleLayout;
+
 	public TitleMessage(String title, String message) {
 		super(message);
 		this.title = title;
 	}
 
+	/**
+	 * Returns a message with {@code title} and {@code message} and default settings, reusing a
+	 * recycled one if available, like {@link Message#obtain(String)}.
+	 */
+	public static TitleMessage obtain(String title, String message) {
+		TitleMessage titleMessage = obtainFromPool(TitleMessage.class);
+		if (titleMessage == null) {
+			return poolable(new TitleMessage(title, message));
+		}
+		titleMessage.setTitle(title).setContent(message);
+		return titleMessage;
+	}
+
 	public String getTitle() {
 		return title;
 	}
 
 	public TitleMessage setTitle(String title) {
+		checkNotRecycled();
 		this.title = title;
+		this.titleLayout = null;
 		return this;
 	}
 
+	/**
+	 * Returns the layout of {@link #getTitle()} that has been computed ahead of time, like {@link
+	 * #getContentLayout()}.
+	 *
+	 * @return The precomputed layout, or {@code null}.
+	 */
+	public Layout getTitleLayout() {
+		return titleLayout;
+	}
+
+	@Override
+	protected void precomputeLayouts(TextPaint paint, int width) {
+		super.precomputeLayouts(paint, width);
+		String text = title;
+		Layout layout = buildTextLayout(text, paint, width);
+		if (text == title) {
+			titleLayout = layout;
+		}
+	}
+
+	@Override
+	protected void onRecycle() {
+		super.onRecycle();
+		title = null;
+		titleLayout = null;
+	}
+
+	@Override
+	public int getEstimatedSize() {
+		return super.getEstimatedSize() + 24 + (title != null ? 2 * title.length() : 0);
+	}
+
 	public TitleMessage(Parcel in) {
 		super(in);
 		this.title = in.readString();
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.res.Resources;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+
+import com.nineoldandroids.animation.Animator;
+import com.nineoldandroids.animation.AnimatorListenerAdapter;
+import com.nineoldandroids.animation.ValueAnimator;
+import com.nineoldandroids.view.ViewHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Hosts several independent message queues, called channels, in a single container that is
+ * attached to the Activity once.
+ * <p/>
+ * Each channel is a {@link TorchView} with its own queue, concurrency and message duration, and is
+ * used like any TorchView. Unlike separately attached TorchViews, the channels of a manager share
+ * one frame callback to read their queues, and one resize animation that moves the messages of all
+ * channels together, so channels don't lay out the window and animate against each other. This
+ * includes closing the gap of a message that has been swiped away.
+ * Channels are stacked in the order in which they have been added; a channel without messages
+ * takes no space.
+ * <p/>
+ * <B>Usage:</B> <BR/> {@code TorchManager manager = new TorchManager(activity);} <BR/> {@code
+ * manager.attach(activity);} <BR/> {@code TorchView status = manager.addChannel(5,
+ * TorchView.LENGTH_SHORT);}
+ * <p/>
+ * All methods must be called from the main thread.
+ */
+public class TorchManager extends LinearLayout {
+
+	private final ArrayList<TorchView> channels = new ArrayList<TorchView>();
+
+	/**
+	 * Channels whose queue should be read on the next frame, in the order of their requests.
+	 */
+	private final ArrayList<TorchView> pendingReads = new ArrayList<TorchView>();
+
+	/**
+	 * Reads the queues of all channels in {@link #pendingReads}, once per frame.
+	 */
+	private final FrameScheduler queueReader = FrameScheduler.create(this, new Runnable() {
+		@Override
+		public void run() {
+			readChannels();
+		}
+	});
+
+	private long resizeAnimationDuration = 300;
+
+	/**
+	 * Running resize-animation of the channels, if any.
+	 */
+	private Animator resizeAnimator;
+
+	/**
+	 * Whether positions have been captured for a resize that starts before the next frame is drawn.
+	 * Further resizes before that frame are part of the same animation.
+	 */
+	private boolean resizePending = false;
+
+	/**
+	 * Views added by all resizes of the pending animation, which are not moved.
+	 */
+	private final ArrayList<View> pendingAddedViews = new ArrayList<View>();
+
+	/**
+	 * Moves the channels and their messages when they are resized.
+	 */
+	private final MoveAnimation moveAnimation = new MoveAnimation(this, new MoveAnimation.Host() {
+		@Override
+		public boolean isShown(View view) {
+			return isAttached(view);
+		}
+
+		@Override
+		public void onMoved() {
+			invalidateChannels();
+		}
+	});
+
+	/**
+	 * Tracks the pending queue reads and resizes, so they can be cancelled when this View is
+	 * detached.
+	 */
+	private final CancellationScope scope = new CancellationScope();
+
+	public TorchManager(Context context) {
+		super(context);
+
+		Resources r = context.getResources();
+
+		setClipChildren(false);
+		setOrientation(LinearLayout.VERTICAL);
+		setGravity(Gravity.BOTTOM);
+
+		FrameLayout.LayoutParams lp = new FrameLayout.LayoutParams(FrameLayout.LayoutParams.MATCH_PARENT,
+				FrameLayout.LayoutParams.WRAP_CONTENT);
+		lp.gravity = Gravity.CENTER_HORIZONTAL | Gravity.BOTTOM;
+		lp.rightMargin = r.getDimensionPixelSize(R.dimen.torchview_margin_right);
+		lp.bottomMargin = r.getDimensionPixelSize(R.dimen.torchview_margin_bottom);
+		lp.leftMargin = r.getDimensionPixelSize(R.dimen.torchview_margin_left);
+		setLayoutParams(lp);
+	}
+
+	public void attach(Activity activity) {
+		if (getParent() != null && getParent() instanceof ViewGroup) {
+			((ViewGroup) getParent()).removeView(this);
+		}
+		ViewGroup rootView = (ViewGroup) activity.findViewById(android.R.id.content);
+		rootView.addView(this);
+	}
+
+	/**
+	 * Adds a channel below the existing channels. The returned TorchView must not be attached by
+	 * itself; set an ID on it to have its state saved and restored.
+	 *
+	 * @param concurrentMessages Maximum number of messages the channel shows at any time.
+	 * @param messageDuration    Time each message of the channel is shown, in milliseconds.
+	 *
+	 * @return The channel.
+	 */
+	public TorchView addChannel(int concurrentMessages, int messageDuration) {
+		TorchView channel = new TorchView(getContext(), concurrentMessages, messageDuration, this);
+		channel.setLayoutParams(new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT,
+				LinearLayout.LayoutParams.WRAP_CONTENT));
+		channels.add(channel);
+		addView(channel);
+		return channel;
+	}
+
+	/**
+	 * Removes {@code channel} and all of its messages, without animating.
+	 */
+	public void removeChannel(TorchView channel) {
+		if (channels.remove(channel)) {
+			pendingReads.remove(channel);
+			channel.clear(true);
+			removeView(channel);
+		}
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		// the channels cancel their own work when they are detached along with this View
+		super.onDetachedFromWindow();
+		scope.cancelAll();
+		pendingReads.clear();
+		resizePending = false;
+		pendingAddedViews.clear();
+	}
+
+	/**
+	 * Sets the duration of the animation that moves the messages of all channels when messages are
+	 * added or removed.
+	 */
+	public void setResizeAnimationDuration(long duration) {
+		this.resizeAnimationDuration = duration;
+	}
+
+	/**
+	 * Schedules {@link TorchView#readNext()} of {@code channel} for the next frame.
+	 */
+	void scheduleRead(TorchView channel) {
+		if (!pendingReads.contains(channel)) {
+			pendingReads.add(channel);
+		}
+		queueReader.schedule();
+		scope.add(queueReader);
+	}
+
+	private void readChannels() {
+		scope.remove(queueReader);
+		TorchView[] channels = pendingReads.toArray(new TorchView[pendingReads.size()]);
+		pendingReads.clear();
+		for (TorchView channel : channels) {
+			if (channel.getParent() == this) {
+				channel.readNext();
+			}
+		}
+	}
+
+	/**
+	 * Animates the channels and their messages from their current positions to the ones of the next
+	 * layout. All calls before the next frame is drawn are combined into one animation, which
+	 * replaces a running one.
+	 *
+	 * @param addedViews Channels, message Views and rows that have not been laid out at their
+	 *                   current place yet, and appear at their new positions right away.
+	 */
+	void resize(View... addedViews) {
+		Collections.addAll(pendingAddedViews, addedViews);
+		if (resizePending) {
+			return;
+		}
+		resizePending = true;
+
+		final int fromTop = moveAnimation.getVisibleTop();
+
+		// current positions: of channels relative to this View, of messages relative to their channel
+		ArrayList<View> laidOut = new ArrayList<View>();
+		for (TorchView channel : channels) {
+			laidOut.add(channel);
+			channel.collectMessageViews(laidOut);
+		}
+		final View[] laidOutViews = laidOut.toArray(new View[laidOut.size()]);
+		final int[] laidOutTops = new int[laidOutViews.length];
+		for (int i = 0; i < laidOutViews.length; i++) {
+			laidOutTops[i] = laidOutViews[i].getTop() + Math.round(ViewHelper.getTranslationY(laidOutViews[i]));
+		}
+		cancelResizeAnimator();
+
+		ViewTreeObserver viewTreeObserver = getViewTreeObserver();
+		if (viewTreeObserver == null) {
+			resizePending = false;
+			pendingAddedViews.clear();
+			return;
+		}
+		scope.runBeforeDraw(viewTreeObserver, new Runnable() {
+			@Override
+			public void run() {
+				resizePending = false;
+				cancelResizeAnimator();
+
+				// Views added by any of the combined resizes appear at their new positions
+				View[] movedViews = new View[laidOutViews.length];
+				int[] fromTops = new int[laidOutViews.length];
+				int count = 0;
+				for (int i = 0; i < laidOutViews.length; i++) {
+					if (!pendingAddedViews.contains(laidOutViews[i])) {
+						movedViews[count] = laidOutViews[i];
+						fromTops[count++] = laidOutTops[i];
+					}
+				}
+				pendingAddedViews.clear();
+				if (count < laidOutViews.length) {
+					movedViews = Arrays.copyOf(movedViews, count);
+					fromTops = Arrays.copyOf(fromTops, count);
+				}
+
+				Animator animator = getMoveAnimator(fromTop, movedViews, fromTops);
+				animator.setDuration(resizeAnimationDuration);
+				animator.addListener(new AnimatorListenerAdapter() {
+					@Override
+					public void onAnimationEnd(Animator animation) {
+						if (resizeAnimator == animation) {
+							resizeAnimator = null;
+						}
+					}
+				});
+				resizeAnimator = animator;
+				scope.track(animator);
+				animator.start();
+			}
+		});
+	}
+
+	private void cancelResizeAnimator() {
+		Animator animator = resizeAnimator;
+		resizeAnimator = null;
+		if (animator != null) {
+			animator.cancel();
+		}
+	}
+
+	/**
+	 * Slides {@code views} from their previous positions to the ones they have after the last
+	 * layout, without laying out again.
+	 *
+	 * @param fromTop  Previous visible top of this container, relative to the parent.
+	 * @param fromTops Previous tops of {@code views}, relative to their parents.
+	 */
+	private ValueAnimator getMoveAnimator(int fromTop, View[] views, int[] fromTops) {
+		int[] offsets = new int[views.length];
+		for (int i = 0; i < views.length; i++) {
+			offsets[i] = fromTops[i] - views[i].getTop();
+		}
+		return moveAnimation.create(fromTop, views, offsets);
+	}
+
+	/**
+	 * Returns whether {@code view} is still a channel or a displayed message of a channel.
+	 */
+	private boolean isAttached(View view) {
+		if (view instanceof TorchView) {
+			return view.getParent() == this;
+		}
+		for (TorchView channel : channels) {
+			if (channel.isMessageViewAttached(view)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Redraws the channels, whose drawn rows are not Views that invalidate themselves.
+	 */
+	private void invalidateChannels() {
+		for (TorchView channel : channels) {
+			channel.invalidate();
+		}
+	}
+}
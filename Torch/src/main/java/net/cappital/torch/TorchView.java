@@ -18,10 +18,15 @@ package net.cappital.torch;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.util.Log;
+import android.os.SystemClock;
+import android.text.TextPaint;
 import android.view.Gravity;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
@@ -31,22 +36,16 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.nineoldandroids.animation.Animator;
-import com.nineoldandroids.animation.AnimatorInflater;
 import com.nineoldandroids.animation.AnimatorListenerAdapter;
-import com.nineoldandroids.animation.AnimatorSet;
-import com.nineoldandroids.animation.ObjectAnimator;
 import com.nineoldandroids.animation.ValueAnimator;
 import com.nineoldandroids.view.ViewHelper;
 import com.nineoldandroids.view.ViewPropertyAnimator;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * In-layout notification library with support for multiple concurrently displayed Toast-like
@@ -55,6 +54,12 @@ import java.util.concurrent.LinkedBlockingQueue;
  * <p/>
  * <B>Usage:</B> <BR/> To provide your own custom View, call {@link #setViewBuilder(ViewBuilder)}}
  * or extend this class and override {@link #getView(Message)}.
+ * <p/>
+ * The {@code show()} methods can be called from any thread. All other methods must be called from
+ * the main thread.
+ * <p/>
+ * To show several independent queues on one screen, create them as channels of a single {@link
+ * TorchManager} instead of attaching several TorchViews.
  */
 public class TorchView extends LinearLayout {
 
@@ -65,30 +70,193 @@ public class TorchView extends LinearLayout {
 		public View getView(Context context, Message message);
 	}
 
+	/**
+	 * {@link ViewBuilder} that can also update a View it has built before with the contents of
+	 * another {@link net.cappital.torch.Message}. This allows {@link TorchView#update(Message)} to
+	 * change a displayed message without replacing its View.
+	 */
+	public static interface ViewBinder extends ViewBuilder {
+		public void bindView(View view, Message message);
+	}
+
+	/**
+	 * {@link ViewBinder} whose Views are recycled: {@link net.cappital.torch.TorchView} creates a
+	 * View per {@link Message#getViewType() view-type} with {@link #createView(Context, int)} and
+	 * fills it with {@link #bindView(View, Message)}. When its message has been removed, the View
+	 * is passed to {@link #unbindView(View)} and kept for the next message of the same view-type.
+	 * <p/>
+	 * {@link #getView(Context, Message)} is not used by TorchView for this type of builder; it can
+	 * be implemented as {@code createView()} followed by {@code bindView()}.
+	 */
+	public static interface RecyclingViewBuilder extends ViewBinder {
+		public View createView(Context context, int viewType);
+
+		public void unbindView(View view);
+	}
+
+	/**
+	 * Decides which message is dropped when a message is added to a full queue. See {@link
+	 * #setQueueCapacity(int, long)} and {@link #setOverflowPolicy(OverflowPolicy)}.
+	 */
+	public static interface OverflowPolicy {
+		/**
+		 * Called when adding {@code message} would exceed the capacity of the queue. The returned
+		 * message is dropped; this is repeated until {@code message} fits.
+		 *
+		 * @param message        The message that is being added.
+		 * @param oldest         The queued message that has been waiting the longest.
+		 * @param lowestPriority The newest queued message with the lowest priority.
+		 *
+		 * @return One of the given messages, which is dropped. Returning {@code message} or {@code
+		 *         null} drops the new message.
+		 */
+		public Message selectMessageToDrop(Message message, Message oldest, Message lowestPriority);
+	}
+
+	/**
+	 * Called by {@link #reject(OnRejectListener)} when a message is not queued because the queue is
+	 * full.
+	 */
+	public static interface OnRejectListener {
+		public void onReject(Message message);
+	}
+
 	private static boolean DEBUG = false;
 
 	private static final String TAG = "TorchView";
 
+	/**
+	 * Interval at which queued messages are checked against their {@link
+	 * Message#setTimeToLive(long) time-to-live}.
+	 */
+	private static final long EXPIRY_SWEEP_INTERVAL = 1000;
+
+	/**
+	 * Resolution of the display-timers of messages.
+	 */
+	private static final long EXPIRY_TICK_DURATION = 50;
+
+	/**
+	 * View-type under which {@link TextRow TextRows} are pooled, apart from the Views of messages.
+	 */
+	private static final int TEXT_ROW_VIEW_TYPE = Integer.MIN_VALUE;
+
+	/**
+	 * Default maximum number of queued messages that are saved with the state of this View.
+	 */
+	public static final int DEFAULT_SAVED_QUEUE_LIMIT = 50;
+
 	@SuppressWarnings("unused")
 	public static final int LENGTH_SHORT = 2000;
 
 	@SuppressWarnings("unused")
 	public static final int LENGTH_LONG = 5000;
 
-	private boolean isAnimating = false;
+	/**
+	 * Closes the gap of a swiped-away message by animating its height, which lays out the window
+	 * on every frame.
+	 */
+	public static final int SWIPE_COLLAPSE_RELAYOUT = SwipeDismissHelper.COLLAPSE_RELAYOUT;
+
+	/**
+	 * Closes the gap of a swiped-away message with the resize animation of the container, see
+	 * {@link #setResizeMode(int)}, like any other removal.
+	 */
+	public static final int SWIPE_COLLAPSE_TRANSLATE = SwipeDismissHelper.COLLAPSE_TRANSLATE;
+
+	/**
+	 * Resizes the container by animating its height, which lays out the window on every frame.
+	 */
+	public static final int RESIZE_RELAYOUT = 0;
+
+	/**
+	 * Resizes the container by laying it out at its new size once, and then sliding the messages
+	 * from their old to their new positions with translations, while clipping the container to its
+	 * growing bounds on API level 18 and up.
+	 */
+	public static final int RESIZE_TRANSLATE = 1;
+
+	/**
+	 * {@link OverflowPolicy} that drops new messages while the queue is full.
+	 */
+	public static final OverflowPolicy OVERFLOW_DROP_NEWEST = new OverflowPolicy() {
+		@Override
+		public Message selectMessageToDrop(Message message, Message oldest, Message lowestPriority) {
+			return message;
+		}
+	};
+
+	/**
+	 * {@link OverflowPolicy} that drops the message that has been queued the longest to make room
+	 * for a new message. This is the default policy.
+	 */
+	public static final OverflowPolicy OVERFLOW_DROP_OLDEST = new OverflowPolicy() {
+		@Override
+		public Message selectMessageToDrop(Message message, Message oldest, Message lowestPriority) {
+			return oldest;
+		}
+	};
+
+	/**
+	 * {@link OverflowPolicy} that drops the newest message with the lowest priority, which may be
+	 * the new message itself.
+	 */
+	public static final OverflowPolicy OVERFLOW_DROP_LOWEST_PRIORITY = new OverflowPolicy() {
+		@Override
+		public Message selectMessageToDrop(Message message, Message oldest, Message lowestPriority) {
+			if (lowestPriority == null || message.getPriority() <= lowestPriority.getPriority()) {
+				return message;
+			}
+			return lowestPriority;
+		}
+	};
+
+	/**
+	 * Running show- or hide-animation of the container, if any.
+	 */
+	private Animator containerAnimator;
+
+	/**
+	 * Whether the container is shown or being shown, as opposed to hidden or being hidden.
+	 */
+	private boolean containerShown = false;
+
+	/**
+	 * Running resize-animation of the container, if any.
+	 */
+	private Animator resizeAnimator;
+
+	/**
+	 * Moves the messages for {@link #RESIZE_TRANSLATE}.
+	 */
+	private final MoveAnimation moveAnimation = new MoveAnimation(this, new MoveAnimation.Host() {
+		@Override
+		public boolean isShown(View view) {
+			return isMessageViewAttached(view);
+		}
+
+		@Override
+		public void onMoved() {
+			if (!textRows.isEmpty()) {
+				invalidate();
+			}
+		}
+	});
 
 	private long resizeAnimationDuration = DEBUG ? 600 : 300;
 
 	private long moveAnimationDuration = DEBUG ? 1000 : 300;
 
+	private int resizeMode = RESIZE_TRANSLATE;
+
 	private long displayAnimationDuration = DEBUG ? 600 : 300;
 
 	protected int messageDuration = Toast.LENGTH_SHORT;
 
 	/**
-	 * This flag defines the interval between delete-operations. Messages are deleted only once
-	 * every few milliseconds as defined by this flag to assure the user is able to see what changes
-	 * are happening to the View.
+	 * This flag defines the interval between delete-operations. Expired messages are deleted in
+	 * batches, at most once every few milliseconds as defined by this flag, to assure the user is
+	 * able to see what changes are happening to the View.
 	 */
 	protected long delayBetweenMessages = 300;
 
@@ -103,6 +271,47 @@ public class TorchView extends LinearLayout {
 	 */
 	private boolean removingMessage = false;
 
+	/**
+	 * Manager that hosts this View as one of its channels, or {@code null} if this View is attached
+	 * on its own. A channel leaves reading its queue and resizing to the manager.
+	 */
+	private final TorchManager manager;
+
+	/**
+	 * Content View of the Activity passed to {@link #attach(Activity)}, which this View is added to.
+	 */
+	private ViewGroup attachRoot;
+
+	/**
+	 * Quiet period after which an idle container detaches itself, or 0 to stay attached.
+	 */
+	private long idleDetachDelay = 0;
+
+	/**
+	 * Whether this View has been attached to a window at least once. Until then it does not detach
+	 * when idle, so that the Activity can restore its saved state into it first.
+	 */
+	private boolean hasBeenAttached = false;
+
+	/**
+	 * Runs {@link #readNext()} once per frame, no matter how often {@link #readQueue()} is called
+	 * during that frame.
+	 */
+	private final FrameScheduler queueReader = FrameScheduler.create(this, new Runnable() {
+		@Override
+		public void run() {
+			readNext();
+		}
+	});
+
+	/**
+	 * Messages collected by {@link #readNext()} for the current batch; kept to avoid allocating
+	 * new lists every frame.
+	 */
+	private final ArrayList<Message> batchRemovals = new ArrayList<Message>();
+
+	private final ArrayList<Message> batchAdditions = new ArrayList<Message>();
+
 	/**
 	 * In-animation resource for the container-View. This is used for every 1st message to be shown.
 	 * Otherwise, the {@link net.cappital.torch.Message Message's} {@link
@@ -126,28 +335,310 @@ public class TorchView extends LinearLayout {
 	 */
 	private ViewBuilder viewBuilder;
 
-	private HashMap<Message, View> mViews = new HashMap<Message, View>();
+	/**
+	 * Views of displayed messages, keyed by {@link Message#key}.
+	 */
+	private LongHashMap<View> mViews = new LongHashMap<View>();
+
+	private MessageQueue messageQueue = new MessageQueue();
+
+	/**
+	 * Displayed messages that should be removed by the next {@link #readNext()}, keyed by {@link
+	 * Message#key}.
+	 */
+	private LongHashMap<Message> pendingRemovals = new LongHashMap<Message>();
+
+	/**
+	 * Messages that have left the queue and have not been removed yet, keyed by {@link
+	 * Message#key}. After {@link #update(Message)} this holds the latest message for a key.
+	 */
+	private LongHashMap<Message> currentMessages = new LongHashMap<Message>();
+
+	/**
+	 * Last internal key handed out to a queued message.
+	 */
+	private long lastKey = 0;
+
+	/**
+	 * Index of all messages with an ID that are either queued or currently displayed, keyed by
+	 * {@link Message#getId()}. Used by {@link #add(Message)} to skip duplicates without scanning
+	 * {@link #currentMessages} and {@link #messageQueue}.
+	 */
+	private LongHashMap<Message> messageIds = new LongHashMap<Message>();
+
+	/**
+	 * Pending display-timers of displayed messages, so they can be cancelled on removal and
+	 * restarted by {@link #update(Message)}.
+	 */
+	private LongHashMap<TimingWheel.Timeout<Message>> expiryTimers =
+			new LongHashMap<TimingWheel.Timeout<Message>>();
+
+	/**
+	 * Maximum number of queued messages, or 0 for no limit.
+	 */
+	private int queueCapacity = 0;
+
+	/**
+	 * Maximum {@link Message#getEstimatedSize() estimated size} of all queued messages, or 0 for
+	 * no limit.
+	 */
+	private long queueCapacityBytes = 0;
+
+	private OverflowPolicy overflowPolicy = OVERFLOW_DROP_OLDEST;
+
+	/**
+	 * Maximum number of queued messages saved by {@link #onSaveInstanceState()}, or 0 for no limit.
+	 */
+	private int savedQueueLimit = DEFAULT_SAVED_QUEUE_LIMIT;
+
+	/**
+	 * Views of removed messages, kept for reuse by the next messages with the same view-type.
+	 */
+	private final ViewPool viewPool = new ViewPool(1);
+
+	/**
+	 * Whether the Views of {@link #getView(Message)} can be filled again with {@link
+	 * #bindView(View, Message)}: they are the default Views, or a subclass that overrides {@code
+	 * getView()} overrides {@code bindView()} as well. Otherwise they are neither pooled nor
+	 * rebound.
+	 */
+	private final boolean defaultViewsReusable;
+
+	private final AnimatorCache animatorCache = AnimatorCache.getInstance();
+
+	/**
+	 * Whether text-only messages are drawn by this View instead of by child Views.
+	 */
+	private boolean canvasRendering = false;
+
+	/**
+	 * Rows of the displayed text-only messages, in display order. They are drawn above the child
+	 * Views.
+	 */
+	private final ArrayList<TextRow> textRows = new ArrayList<TextRow>();
+
+	/**
+	 * Paint of {@link #textRows}, taken from a default TextView so rows look like {@code
+	 * R.layout.default_message}; created on first use.
+	 */
+	private TextPaint textPaint;
+
+	/**
+	 * Computes the text layouts of shown messages in the background, or {@code null} if disabled.
+	 */
+	private volatile TextLayoutPrecomputer textLayoutPrecomputer;
+
+	/**
+	 * Keeps the messages of this View across process death, or {@code null} if disabled.
+	 */
+	private MessageJournal journal;
+
+	/**
+	 * Identifies the records of {@link #journal} that this View has put or restored.
+	 */
+	private final Object journalOwner = new Object();
+
+	/**
+	 * Restores the messages of {@link #journal} from before, or {@code null} when done.
+	 */
+	private MessageJournal.Replay journalReplay;
+
+	/**
+	 * Whether a batch of {@link #journalReplay} is being decoded.
+	 */
+	private boolean journalReplayRequested = false;
+
+	private final MessageJournal.Receiver journalReceiver = new MessageJournal.Receiver() {
+		@Override
+		public void onReplay(MessageJournal.Replay replay, ArrayList<Message> messages) {
+			if (replay != journalReplay) {
+				// journal has been replaced or cleared meanwhile
+				replay.giveBack(messages);
+				return;
+			}
+			journalReplayRequested = false;
+			if (messages.isEmpty()) {
+				journalReplay = null;
+				return;
+			}
+
+			// restored messages wait in the journal rather than overflow the queue
+			int queued = 0;
+			while (queued < messages.size() && !isQueueFull(messages.get(queued))) {
+				Message message = messages.get(queued++);
+				precomputeTextLayout(message);
+				add(message);
+			}
+			if (queued < messages.size()) {
+				replay.giveBack(messages.subList(queued, messages.size()));
+			}
+			readQueue();
+			requestJournalReplay();
+		}
+	};
+
+	/**
+	 * Handles swipe-to-dismiss for all message Views.
+	 */
+	private SwipeDismissHelper swipeDismissHelper;
+
+	/**
+	 * Number of queued messages for which a View is prepared ahead of time, or 0 to build Views
+	 * only when they are needed.
+	 */
+	private int prefetchCount = 0;
+
+	/**
+	 * Views that have been built ahead of time for queued messages.
+	 */
+	private final LongHashMap<View> prefetchedViews = new LongHashMap<View>();
+
+	private boolean prefetchScheduled = false;
+
+	private final CancellationScope.Cancellable prefetchCancellation = new CancellationScope.Cancellable() {
+		@Override
+		public void cancel() {
+			Looper.myQueue().removeIdleHandler(prefetcher);
+			prefetchScheduled = false;
+		}
+	};
+
+	/**
+	 * Builds the View of one queued message each time the main thread becomes idle, until Views for
+	 * the next {@link #prefetchCount} messages are ready.
+	 */
+	private final android.os.MessageQueue.IdleHandler prefetcher = new android.os.MessageQueue.IdleHandler() {
+		@Override
+		public boolean queueIdle() {
+			prefetchScheduled = prefetchNextView();
+			if (!prefetchScheduled) {
+				scope.remove(prefetchCancellation);
+			}
+			return prefetchScheduled;
+		}
+	};
+
+	/**
+	 * Lock-free queue of messages passed to {@link #show(Message)} from background threads. It is
+	 * drained on the main thread, by {@link #drainIngressQueue()}, in a single batch per post.
+	 */
+	private final ConcurrentLinkedQueue<Message> ingressQueue = new ConcurrentLinkedQueue<Message>();
+
+	/**
+	 * Whether {@link #drainIngressQueue} has been posted to the main thread and has not started
+	 * yet. Ensures background threads post at most one Runnable per batch.
+	 */
+	private final AtomicBoolean ingressScheduled = new AtomicBoolean(false);
+
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Tracks all pending callbacks and animations of this View, so they can be cancelled when it is
+	 * detached or cleared.
+	 */
+	private final CancellationScope scope = new CancellationScope();
+
+	private final CancellationScope.ScheduledTask clearRemoveStatus = scope.newTask(mainHandler, new Runnable() {
+		@Override
+		public void run() {
+			removingMessage = false;
+			readQueue();
+		}
+	});
+
+	private final CancellationScope.ScheduledTask idleDetach = scope.newTask(mainHandler, new Runnable() {
+		@Override
+		public void run() {
+			detachIfIdle();
+		}
+	});
 
-	private List<Message> messageQueue = Collections.synchronizedList(new LinkedList<Message>());
+	/**
+	 * Drives all display-timers from a single Handler callback.
+	 */
+	private final TimingWheel<Message> expiryWheel = new TimingWheel<Message>(mainHandler,
+			EXPIRY_TICK_DURATION, 64, new TimingWheel.Callback<Message>() {
+		@Override
+		public void onExpired(Message message) {
+			expiryTimers.remove(message.key);
+			removeMessage(message);
+		}
+	});
 
-	private LinkedBlockingQueue<Message> removalQueue = new LinkedBlockingQueue<Message>();
+	private final CancellationScope.ScheduledTask expirySweep = scope.newTask(mainHandler, new Runnable() {
+		@Override
+		public void run() {
+			if (removeExpiredMessages()) {
+				scheduleExpirySweep();
+			}
+		}
+	});
 
-	private ArrayList<Message> currentMessages = new ArrayList<Message>();
+	private final Runnable drainIngressQueue = new Runnable() {
+		@Override
+		public void run() {
+			drainIngressQueue();
+			readQueue();
+		}
+	};
 
 	public TorchView(Context context, int concurrentMessages, int messageDuration) {
+		this(context, concurrentMessages, messageDuration, null);
+	}
+
+	/**
+	 * Creates a channel of {@code manager}, see {@link TorchManager#addChannel(int, int)}.
+	 */
+	TorchView(Context context, int concurrentMessages, int messageDuration, TorchManager manager) {
 		super(context);
 
+		this.manager = manager;
 		this.maxConcurrent = concurrentMessages;
 		this.messageDuration = messageDuration;
 		this.delayBetweenMessages = 300;
+		this.viewPool.setMaxPerType(concurrentMessages);
+		this.defaultViewsReusable = !overrides("getView", Message.class)
+				|| overrides("bindView", View.class, Message.class);
 
 		init(context);
 	}
 
+	/**
+	 * Returns whether the class of this View overrides the public method {@code name}.
+	 */
+	private boolean overrides(String name, Class<?>... parameterTypes) {
+		try {
+			return getClass().getMethod(name, parameterTypes).getDeclaringClass() != TorchView.class;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
 	private void init(Context context) {
-		messageQueue = new ArrayList<Message>();
-		currentMessages = new ArrayList<Message>();
-		removalQueue = new LinkedBlockingQueue<Message>();
+		swipeDismissHelper = new SwipeDismissHelper(this, scope, new SwipeDismissHelper.Callbacks() {
+			@Override
+			public boolean canDismiss(View view) {
+				Message message = getDisplayedMessage(view);
+				return message != null && message.isDismissable();
+			}
+
+			@Override
+			public void onDismiss(View view, boolean collapsed) {
+				Message message = getDisplayedMessage(view);
+				if (message != null) {
+					if (!collapsed && mViews.size() > 1) {
+						// slide the other messages and rows into the gap, like any removal
+						resizeContainer();
+					}
+					dismissView(message);
+				}
+			}
+		});
+
+		messageQueue = new MessageQueue();
+		currentMessages = new LongHashMap<Message>();
+		pendingRemovals = new LongHashMap<Message>();
+		messageIds = new LongHashMap<Message>();
 
 		Resources r = context.getResources();
 
@@ -175,45 +666,418 @@ public class TorchView extends LinearLayout {
 		setLayoutParams(lp);
 	}
 
+	/**
+	 * Adds this View to the content View of {@code activity}. With {@link #setIdleDetachDelay(long)}
+	 * enabled, an idle View that has been attached before is only added once it has a message to
+	 * show.
+	 */
 	public void attach(Activity activity) {
 		if (getParent() != null && getParent() instanceof ViewGroup) {
 			((ViewGroup) getParent()).removeView(this);
 		}
-		ViewGroup rootView = (ViewGroup) activity.findViewById(android.R.id.content);
-		rootView.addView(this);
+		attachRoot = (ViewGroup) activity.findViewById(android.R.id.content);
+		if (idleDetachDelay <= 0 || !isIdle() || !hasBeenAttached) {
+			attachRoot.addView(this);
+		}
 	}
 
-	public void setViewBuilder(ViewBuilder viewBuilder) {
-		this.viewBuilder = viewBuilder;
+	/**
+	 * Keeps this View out of the View hierarchy while it has nothing to show. It is added to the
+	 * Activity of {@link #attach(Activity)} when a message is queued, and removed again, releasing
+	 * its recycled Views, once it has been idle for {@code delay} milliseconds: no queued or
+	 * displayed messages and no running animations. This saves an inert container from taking part
+	 * in every layout and traversal of the window. Messages are shown in the same order either
+	 * way. A new View stays attached until the window has been attached, so its saved state is
+	 * restored as usual when the Activity is recreated.
+	 * <p/>
+	 * Does not apply to channels of a {@link TorchManager}.
+	 *
+	 * @param delay Quiet period in milliseconds, or 0 to stay attached (the default).
+	 */
+	public void setIdleDetachDelay(long delay) {
+		this.idleDetachDelay = manager == null ? Math.max(0, delay) : 0;
+		idleDetach.cancel();
+		if (idleDetachDelay > 0) {
+			scheduleIdleDetach();
+		} else {
+			attachIfDetached();
+		}
 	}
 
-	private void resizeContainer(final Animator.AnimatorListener animatorListener, Animator... additionalAnimators) {
-		final ArrayList<Animator> animators = new ArrayList<Animator>(Arrays.asList(additionalAnimators));
-		final int fromHeight = getHeight();
-
-		final ViewTreeObserver viewTreeObserver = getViewTreeObserver();
-		if (viewTreeObserver != null) {
-			viewTreeObserver.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-				@Override
-				public boolean onPreDraw() {
-					viewTreeObserver.removeOnPreDrawListener(this);
-
-					// expand boundaries gracefully
-					int toHeight = getHeight();
-					animators.add(getHeightAnimator(fromHeight, toHeight, null));
-
-					AnimatorSet set = new AnimatorSet();
-					set.setDuration(resizeAnimationDuration);
-					set.addListener(animatorListener);
-					set.playTogether(animators);
-					set.start();
+	/**
+	 * Returns whether this View has no queued or displayed messages and no running animations.
+	 */
+	private boolean isIdle() {
+		return !containerShown && containerAnimator == null && mViews.isEmpty() && currentMessages.isEmpty()
+				&& messageQueue.isEmpty() && ingressQueue.isEmpty();
+	}
 
-					return false;
-				}
-			});
+	private void scheduleIdleDetach() {
+		if (idleDetachDelay > 0 && attachRoot != null) {
+			idleDetach.postDelayed(idleDetachDelay);
 		}
 	}
 
+	/**
+	 * Called when a message is queued: cancels a pending idle detach, and adds this View to the
+	 * Activity of {@link #attach(Activity)} again if it has detached itself.
+	 */
+	private void attachIfDetached() {
+		idleDetach.cancel();
+		if (getParent() == null && attachRoot != null) {
+			attachRoot.addView(this);
+		}
+	}
+
+	private void detachIfIdle() {
+		if (idleDetachDelay <= 0 || !hasBeenAttached || !isIdle() || !(getParent() instanceof ViewGroup)) {
+			return;
+		}
+
+		// release what an idle container holds on to
+		cancelScheduledWork();
+		recyclePrefetchedViews(null, 0);
+		viewPool.clear();
+		// maps may have grown during a burst of messages
+		mViews = new LongHashMap<View>();
+		currentMessages = new LongHashMap<Message>();
+		pendingRemovals = new LongHashMap<Message>();
+		expiryTimers = new LongHashMap<TimingWheel.Timeout<Message>>();
+
+		((ViewGroup) getParent()).removeView(this);
+	}
+
+	public void setViewBuilder(ViewBuilder viewBuilder) {
+		if (this.viewBuilder != viewBuilder) {
+			// recycled and prefetched Views were built by the previous builder
+			prefetchedViews.clear();
+			viewPool.clear();
+		}
+		this.viewBuilder = viewBuilder;
+		schedulePrefetch();
+	}
+
+	/**
+	 * Prepares the Views of the next {@code count} queued messages while the main thread is idle,
+	 * so that showing a message only has to attach a View that has already been built and bound.
+	 * Views are prepared on the main thread, since building Views is generally not thread-safe.
+	 *
+	 * @param count Number of queued messages to prepare a View for, or 0 to disable.
+	 */
+	public void setPrefetchCount(int count) {
+		this.prefetchCount = count;
+		if (count > 0) {
+			schedulePrefetch();
+		} else {
+			recyclePrefetchedViews(null, 0);
+		}
+	}
+
+	/**
+	 * Lets this View draw plain text messages itself, instead of adding a child View per message.
+	 * Each such message costs a cached text layout and a row on the canvas, rather than the
+	 * inflation, measurement and layout of a View, which makes bursts of short status messages
+	 * cheaper.
+	 * <p/>
+	 * Only messages of the {@link Message} class itself that are not {@link Message#isDismissable()
+	 * dismissable} are drawn this way, and only while no {@link ViewBuilder} is set; all other
+	 * messages are shown with child Views, below the drawn rows. Do not enable this if you override
+	 * {@link #getView(Message)}. Takes effect for messages that are displayed from now on.
+	 *
+	 * @param enabled {@code true} to draw text-only messages on the canvas of this View.
+	 */
+	public void setCanvasRendering(boolean enabled) {
+		if (this.canvasRendering != enabled) {
+			this.canvasRendering = enabled;
+			// prefetched Views may be of the wrong kind now
+			recyclePrefetchedViews(null, 0);
+		}
+	}
+
+	/**
+	 * Lets {@link #show(Message)} and {@link #update(Message)} compute the text layouts of messages
+	 * on a background thread, so that line breaking and measuring long or complex text does not
+	 * hold up the frame in which a message appears. The layouts are attached to the messages, see
+	 * {@link Message#getContentLayout()}. They are laid out like the default message View, on a
+	 * single line at its width, and are used by the rows of {@link #setCanvasRendering(boolean)},
+	 * by the default message View itself, which is then a {@link PrecomputedTextView}, and by your
+	 * own PrecomputedTextViews.
+	 * <p/>
+	 * A message is not held up until its layouts are ready; if they are not, its text is measured
+	 * on the main thread as usual.
+	 *
+	 * @param enabled {@code true} to compute text layouts ahead of time.
+	 */
+	public void setTextPrecomputation(boolean enabled) {
+		if (!enabled) {
+			textLayoutPrecomputer = null;
+		} else if (textLayoutPrecomputer == null) {
+			textLayoutPrecomputer = new TextLayoutPrecomputer(getTextPaint(), getMessageTextWidth());
+		}
+	}
+
+	/**
+	 * Returns the width available to the text of a default message View: the width of this View,
+	 * or the estimated width if it has not been laid out yet.
+	 */
+	private int getMessageTextWidth() {
+		Resources r = getResources();
+		int width = getWidth();
+		if (width == 0) {
+			width = r.getDisplayMetrics().widthPixels
+					- r.getDimensionPixelSize(R.dimen.torchview_margin_left)
+					- r.getDimensionPixelSize(R.dimen.torchview_margin_right);
+		}
+		return width - getPaddingLeft() - getPaddingRight()
+				- 2 * r.getDimensionPixelSize(R.dimen.torch_message_padding_horizontal);
+	}
+
+	private void precomputeTextLayout(Message message) {
+		TextLayoutPrecomputer precomputer = textLayoutPrecomputer;
+		if (precomputer != null) {
+			precomputer.submit(message);
+		}
+	}
+
+	/**
+	 * Returns whether {@code message} is drawn as a {@link TextRow} instead of by a child View.
+	 */
+	private boolean isDrawnAsText(Message message) {
+		return canvasRendering && viewBuilder == null && message.getClass() == Message.class
+				&& !message.isDismissable();
+	}
+
+	/**
+	 * Sets how the container animates a change of its size, when messages are added or removed.
+	 *
+	 * @param resizeMode Either {@link #RESIZE_TRANSLATE} (the default) or {@link
+	 *                   #RESIZE_RELAYOUT}.
+	 */
+	public void setResizeMode(int resizeMode) {
+		this.resizeMode = resizeMode;
+	}
+
+	/**
+	 * Sets how the gap left by a message that has been swiped away is closed.
+	 *
+	 * @param collapseMode Either {@link #SWIPE_COLLAPSE_TRANSLATE} (the default) or {@link
+	 *                     #SWIPE_COLLAPSE_RELAYOUT}.
+	 */
+	public void setSwipeCollapseMode(int collapseMode) {
+		swipeDismissHelper.setCollapseMode(collapseMode);
+	}
+
+	/**
+	 * Limits the number of messages waiting in the queue. Displayed messages do not count towards
+	 * this limit. When a message is added to a full queue, the {@link OverflowPolicy} set by {@link
+	 * #setOverflowPolicy(OverflowPolicy)} decides which message is dropped.
+	 *
+	 * @param maxMessages Maximum number of queued messages, or 0 for no limit.
+	 */
+	public void setQueueCapacity(int maxMessages) {
+		setQueueCapacity(maxMessages, 0);
+	}
+
+	/**
+	 * Limits the number and the total {@link Message#getEstimatedSize() estimated size} of messages
+	 * waiting in the queue. See {@link #setQueueCapacity(int)}.
+	 *
+	 * @param maxMessages Maximum number of queued messages, or 0 for no limit.
+	 * @param maxBytes    Maximum estimated size of all queued messages in bytes, or 0 for no limit.
+	 */
+	public void setQueueCapacity(int maxMessages, long maxBytes) {
+		this.queueCapacity = maxMessages;
+		this.queueCapacityBytes = maxBytes;
+	}
+
+	/**
+	 * Sets the policy that decides which message is dropped when the queue is full. Use one of
+	 * {@link #OVERFLOW_DROP_NEWEST}, {@link #OVERFLOW_DROP_OLDEST}, {@link
+	 * #OVERFLOW_DROP_LOWEST_PRIORITY}, {@link #reject(OnRejectListener)} or your own implementation.
+	 *
+	 * @param overflowPolicy The {@link OverflowPolicy} to use.
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OVERFLOW_DROP_OLDEST;
+	}
+
+	/**
+	 * Limits the number of queued messages that are saved with the state of this View, to keep
+	 * saving and restoring fast and the saved state well below the Binder transaction limit. The
+	 * messages that would be shown first are kept; displayed messages are always saved.
+	 *
+	 * @param maxMessages Maximum number of queued messages to save, or 0 for no limit. Defaults to
+	 *                    {@link #DEFAULT_SAVED_QUEUE_LIMIT}.
+	 */
+	public void setSavedQueueLimit(int maxMessages) {
+		this.savedQueueLimit = Math.max(0, maxMessages);
+	}
+
+	/**
+	 * Keeps the queued and displayed messages in {@code journal}, so they are shown again after the
+	 * process has been killed, and shows the messages it holds from before. Messages in the journal
+	 * are restored in the background, a few at a time as the queue drains, and queued after the
+	 * messages that are already shown.
+	 * <p/>
+	 * With a journal, messages are no longer saved with the state of this View. Set the same journal
+	 * each time the Activity is created, before showing messages.
+	 *
+	 * @param journal The {@link MessageJournal} to use, or {@code null} to stop keeping messages.
+	 */
+	public void setMessageJournal(MessageJournal journal) {
+		this.journal = journal;
+		this.journalReplay = journal != null ? journal.replay(journalOwner, journalReceiver) : null;
+		this.journalReplayRequested = false;
+		requestJournalReplay();
+	}
+
+	/**
+	 * Restores the next messages from the journal, if the queue is running low and has room.
+	 */
+	private void requestJournalReplay() {
+		if (journalReplay != null && !journalReplayRequested
+				&& messageQueue.size() < MessageJournal.REPLAY_BATCH_SIZE
+				&& (queueCapacity <= 0 || messageQueue.size() < queueCapacity)) {
+			journalReplayRequested = true;
+			journalReplay.requestNext();
+		}
+	}
+
+	/**
+	 * Returns an {@link OverflowPolicy} that refuses new messages while the queue is full and
+	 * reports each refused message to {@code listener}, allowing the caller to retry or back off.
+	 *
+	 * @param listener The listener to notify of refused messages.
+	 *
+	 * @return The {@link OverflowPolicy}.
+	 */
+	public static OverflowPolicy reject(OnRejectListener listener) {
+		return new RejectPolicy(listener);
+	}
+
+	/**
+	 * Policy of {@link #reject(OnRejectListener)}. Refused messages are handed to the listener, so
+	 * they are not recycled.
+	 */
+	private static final class RejectPolicy implements OverflowPolicy {
+
+		private final OnRejectListener listener;
+
+		RejectPolicy(OnRejectListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public Message selectMessageToDrop(Message message, Message oldest, Message lowestPriority) {
+			listener.onReject(message);
+			return message;
+		}
+	}
+
+	/**
+	 * Animates the container from its current size to the size of its next layout. A running resize
+	 * is retargeted: the new animation starts from where the messages are at this moment.
+	 *
+	 * @param addedViews Message Views and rows that have been added since the last layout.
+	 */
+	private void resizeContainer(View... addedViews) {
+		if (manager != null) {
+			// the manager moves the messages of all its channels at once
+			manager.resize(addedViews);
+			return;
+		}
+
+		final int fromHeight = getHeight();
+		final int fromTop = moveAnimation.getVisibleTop();
+
+		// current positions of the Views and rows that have been laid out before, relative to the parent
+		int rowCount = textRows.size();
+		View[] laidOut = new View[rowCount + getChildCount()];
+		int count = 0;
+		for (int i = 0; i < laidOut.length; i++) {
+			View view = i < rowCount ? textRows.get(i) : getChildAt(i - rowCount);
+			if (!contains(addedViews, view)) {
+				laidOut[count++] = view;
+			}
+		}
+		final View[] movedViews = new View[count];
+		final int[] fromTops = new int[count];
+		for (int i = 0; i < count; i++) {
+			movedViews[i] = laidOut[i];
+			fromTops[i] = getTop() + movedViews[i].getTop() + Math.round(ViewHelper.getTranslationY(movedViews[i]));
+		}
+		cancelResizeAnimator();
+
+		ViewTreeObserver viewTreeObserver = getViewTreeObserver();
+		if (viewTreeObserver != null) {
+			scope.runBeforeDraw(viewTreeObserver, new Runnable() {
+				@Override
+				public void run() {
+					cancelResizeAnimator();
+
+					// expand boundaries gracefully
+					Animator animator;
+					if (resizeMode == RESIZE_TRANSLATE) {
+						animator = getMoveAnimator(fromTop, movedViews, fromTops);
+					} else {
+						animator = getHeightAnimator(fromHeight, getHeight(), null);
+					}
+					animator.setDuration(resizeAnimationDuration);
+					animator.addListener(new AnimatorListenerAdapter() {
+						@Override
+						public void onAnimationEnd(Animator animation) {
+							if (resizeAnimator == animation) {
+								resizeAnimator = null;
+							}
+						}
+					});
+					resizeAnimator = animator;
+					scope.track(animator);
+					animator.start();
+				}
+			});
+		}
+	}
+
+	private static boolean contains(View[] views, View view) {
+		for (View v : views) {
+			if (v == view) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void cancelResizeAnimator() {
+		Animator animator = resizeAnimator;
+		resizeAnimator = null;
+		if (animator != null) {
+			animator.cancel();
+			ViewGroup.LayoutParams layoutParams = getLayoutParams();
+			if (resizeMode == RESIZE_RELAYOUT && layoutParams != null
+					&& layoutParams.height != ViewGroup.LayoutParams.WRAP_CONTENT) {
+				// let the next layout measure the real size again
+				layoutParams.height = ViewGroup.LayoutParams.WRAP_CONTENT;
+				setLayoutParams(layoutParams);
+			}
+		}
+	}
+
+	/**
+	 * Slides {@code views} from their previous positions to the ones they have after the last
+	 * layout, without laying out again.
+	 *
+	 * @param fromTop  Previous visible top of this container, relative to the parent.
+	 * @param fromTops Previous tops of {@code views}, relative to the parent.
+	 */
+	private ValueAnimator getMoveAnimator(int fromTop, View[] views, int[] fromTops) {
+		int[] offsets = new int[views.length];
+		for (int i = 0; i < views.length; i++) {
+			offsets[i] = fromTops[i] - (getTop() + views[i].getTop());
+		}
+		return moveAnimation.create(fromTop, views, offsets);
+	}
+
 	private ValueAnimator getHeightAnimator(int fromHeight, final int toHeight, Animator.AnimatorListener listener) {
 		ValueAnimator heightAnim = ValueAnimator.ofInt(fromHeight, toHeight);
 		heightAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
@@ -238,48 +1102,183 @@ public class TorchView extends LinearLayout {
 		return heightAnim;
 	}
 
-	private void onMessageDisplayed(final Message message) {
-		// -> child animation done, start timer
-		if (messageDuration > 0) {
-			// start timer for removing
-			postDelayed(new Runnable() {
-				@Override
-				public void run() {
-					removeMessage(message);
-				}
-			}, messageDuration);
+	private void onMessageDisplayed(Message message) {
+		// -> child animation done, start timer, unless the message has been removed meanwhile
+		message = resolve(message);
+		if (mViews.containsKey(message.key)) {
+			cancelExpiryTimer(message);
+			startExpiryTimer(message);
 		}
 
 		// see if we can addMessageView more messages
 		readQueue();
 	}
 
+	private void startExpiryTimer(Message message) {
+		if (messageDuration > 0) {
+			// start timer for removing
+			expiryTimers.put(message.key, expiryWheel.schedule(message, messageDuration));
+		}
+	}
+
+	/**
+	 * Cancels the display-timer of {@code message}.
+	 *
+	 * @return {@code true} if a timer was pending.
+	 */
+	private boolean cancelExpiryTimer(Message message) {
+		TimingWheel.Timeout<Message> timer = expiryTimers.remove(message.key);
+		if (timer != null) {
+			expiryWheel.cancel(timer);
+			return true;
+		}
+		return false;
+	}
+
 	private View getMessageView(Message message) {
+		View view = prefetchedViews.remove(message.key);
+		if (view == null) {
+			view = buildMessageView(message);
+		}
+
+		// swipes are handled by this container; see swipeDismissHelper
+		view.setClickable(true);
+		view.setTag(R.id.torch_view_message, message);
+		return view;
+	}
+
+	/**
+	 * Returns the displayed message that {@code view} shows, or {@code null} if it is not
+	 * displayed (anymore).
+	 */
+	private Message getDisplayedMessage(View view) {
+		Object tag = view.getTag(R.id.torch_view_message);
+		if (!(tag instanceof Message)) {
+			return null;
+		}
+		Message message = resolve((Message) tag);
+		return mViews.get(message.key) == view ? message : null;
+	}
+
+	/**
+	 * Returns the message that holds the key of {@code message} now: {@code message} itself, or the
+	 * message that took its place in {@link #update(Message)}.
+	 */
+	private Message resolve(Message message) {
+		Message current = currentMessages.get(message.key);
+		return current != null ? current : message;
+	}
+
+	/**
+	 * Hands out a new internal key for {@code message}.
+	 */
+	private void assignKey(Message message) {
+		message.key = ++lastKey;
+	}
+
+	/**
+	 * Builds and binds the View for {@code message}, reusing a recycled View if possible.
+	 */
+	private View buildMessageView(Message message) {
+		if (isDrawnAsText(message)) {
+			TextRow row = (TextRow) viewPool.acquire(TEXT_ROW_VIEW_TYPE);
+			if (row == null) {
+				row = new TextRow(getContext());
+			}
+			row.bind(message);
+			row.setTag(R.id.torch_view_type, TEXT_ROW_VIEW_TYPE);
+			return row;
+		}
+
+		int viewType = message.getViewType();
 		View view = null;
-		if (this.viewBuilder != null) {
+
+		if (viewBuilder instanceof RecyclingViewBuilder) {
+			RecyclingViewBuilder builder = (RecyclingViewBuilder) viewBuilder;
+			view = viewPool.acquire(viewType);
+			if (view == null) {
+				view = builder.createView(getContext(), viewType);
+			}
+			builder.bindView(view, message);
+
+		} else if (this.viewBuilder != null) {
 			view = viewBuilder.getView(getContext(), message);
 		}
 
 		if (view == null) {
-			view = getView(message);
+			// default View: reuse a recycled View if it can be bound to this message
+			View recycled = viewBuilder == null && defaultViewsReusable ? viewPool.acquire(viewType) : null;
+			if (recycled != null && bindView(recycled, message)) {
+				view = recycled;
+			} else {
+				view = getView(message);
+			}
 		}
+		view.setTag(R.id.torch_view_type, viewType);
 
-		final View mView = view;
-		mView.setClickable(true);
-		mView.setOnTouchListener(new SwipeDismissTouchListener(mView, message, new SwipeDismissTouchListener.DismissCallbacks() {
-			@Override
-			public boolean canDismiss(Object token) {
-				return ((Message) token).isDismissable();
+		return view;
+	}
+
+	private void schedulePrefetch() {
+		if (prefetchCount > 0 && !prefetchScheduled && !messageQueue.isEmpty()) {
+			prefetchScheduled = true;
+			Looper.myQueue().addIdleHandler(prefetcher);
+			scope.add(prefetchCancellation);
+		}
+	}
+
+	/**
+	 * Builds the View for the first of the next {@link #prefetchCount} queued messages that has no
+	 * View yet.
+	 *
+	 * @return {@code true} if more Views remain to be built.
+	 */
+	private boolean prefetchNextView() {
+		Message[] upcoming = new Message[prefetchCount];
+		int count = 0;
+		for (Message message : messageQueue) {
+			if (count == upcoming.length) {
+				break;
 			}
+			upcoming[count++] = message;
+		}
 
-			@Override
-			public void onDismiss(View view, Object token) {
-				Message message = (Message) token;
-				dismissView(message);
+		for (int i = 0; i < count; i++) {
+			if (!prefetchedViews.containsKey(upcoming[i].key)) {
+				prefetchedViews.put(upcoming[i].key, buildMessageView(upcoming[i]));
+				return i < count - 1;
 			}
-		}));
+		}
 
-		return mView;
+		// all upcoming messages have a View: release Views of messages that have left the queue
+		recyclePrefetchedViews(upcoming, count);
+		return false;
+	}
+
+	/**
+	 * Recycles all prefetched Views, except for those of the first {@code count} messages in
+	 * {@code keep}.
+	 */
+	private void recyclePrefetchedViews(Message[] keep, int count) {
+		if (prefetchedViews.isEmpty()) {
+			return;
+		}
+
+		long[] stale = new long[prefetchedViews.size()];
+		int staleCount = 0;
+		for (int slot = 0; slot < prefetchedViews.capacity(); slot++) {
+			long key = prefetchedViews.keyAt(slot);
+			boolean upcoming = key == 0;
+			for (int i = 0; i < count && !upcoming; i++) {
+				upcoming = keep[i].key == key;
+			}
+			if (!upcoming) {
+				stale[staleCount++] = key;
+			}
+		}
+		for (int i = 0; i < staleCount; i++) {
+			recycleMessageView(prefetchedViews.remove(stale[i]));
+		}
 	}
 
 	/**
@@ -294,7 +1293,18 @@ public class TorchView extends LinearLayout {
 		Context context = getContext();
 		View v = null;
 
-		if (context != null) {
+		if (context != null && textLayoutPrecomputer != null) {
+			// same look as the layout below, drawn with the precomputed layout
+			Resources r = getResources();
+			int paddingHorizontal = r.getDimensionPixelSize(R.dimen.torch_message_padding_horizontal);
+			int paddingVertical = r.getDimensionPixelSize(R.dimen.torch_message_padding_vertical);
+			PrecomputedTextView tv = new PrecomputedTextView(context);
+			tv.setId(R.id.torch_message);
+			tv.setPadding(paddingHorizontal, paddingVertical, paddingHorizontal, paddingVertical);
+			tv.setSingleLine(true);
+			tv.setText(message.getContent(), message.getContentLayout());
+			v = tv;
+		} else if (context != null) {
 			v = View.inflate(context, R.layout.default_message, null);
 			TextView tv = (TextView) v.findViewById(R.id.torch_message);
 			if (tv != null) {
@@ -305,97 +1315,559 @@ public class TorchView extends LinearLayout {
 		return v;
 	}
 
-	private void onMessageRemoved(Message message) {
-		// if we dismissed item, remove it from removalQueue
-		removalQueue.remove(message);
-		currentMessages.remove(message);
-		readQueue();
-	}
+	/**
+	 * Updates a View that was returned by {@link #getView(Message)} with the contents of {@code
+	 * message}. If you override {@link #getView(Message)}, override this method as well to allow
+	 * {@link #update(Message)} and later messages to reuse your Views; otherwise they are never
+	 * rebound.
+	 *
+	 * @param view    The View to update.
+	 * @param message The {@link net.cappital.torch.Message} to show in {@code view}.
+	 *
+	 * @return {@code true} if {@code view} has been updated, {@code false} if it can not be reused.
+	 */
+	public boolean bindView(View view, Message message) {
+		View textView = view.findViewById(R.id.torch_message);
+		if (textView instanceof PrecomputedTextView) {
+			((PrecomputedTextView) textView).setText(message.getContent(), message.getContentLayout());
+			return true;
+		}
+		TextView tv = (TextView) textView;
+		if (tv != null) {
+			tv.setText(message.getContent());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Shows {@code message} in the View of a displayed message, reusing that View if possible.
+	 *
+	 * @return The View that now shows {@code message}.
+	 */
+	private View rebindMessageView(View view, Message message) {
+		if (view instanceof TextRow) {
+			if (!isDrawnAsText(message)) {
+				return swapMessageView(view, message);
+			}
+			((TextRow) view).bind(message);
+			view.setTag(R.id.torch_view_message, message);
+			requestLayout();
+			invalidate();
+			return view;
+		}
+
+		Object viewType = view.getTag(R.id.torch_view_type);
+		if (viewType instanceof Integer && (Integer) viewType != message.getViewType()) {
+			// View was built for another view-type
+			return swapMessageView(view, message);
+		}
+
+		if (viewBuilder instanceof ViewBinder) {
+			((ViewBinder) viewBuilder).bindView(view, message);
+			return view;
+		}
+		if (viewBuilder == null && defaultViewsReusable && bindView(view, message)) {
+			return view;
+		}
+
+		return swapMessageView(view, message);
+	}
+
+	/**
+	 * Replaces a displayed View with a new View for {@code message}, without animating.
+	 */
+	private View swapMessageView(View view, Message message) {
+		View newView = getMessageView(message);
+		if (isMessageViewAttached(view)) {
+			int index = view instanceof TextRow ? textRows.indexOf(view) : indexOfChild(view);
+			detachMessageView(view);
+			if ((view instanceof TextRow) == (newView instanceof TextRow)) {
+				attachMessageView(newView, index);
+			} else {
+				attachMessageView(newView, -1);
+			}
+			recycleMessageView(view);
+		}
+		return newView;
+	}
+
+	/**
+	 * Shows a message View: adds it as a child, or as a row if it is a {@link TextRow}.
+	 *
+	 * @param index Position among the children or rows, or -1 to add it at the end.
+	 */
+	private void attachMessageView(View view, int index) {
+		if (view instanceof TextRow) {
+			textRows.add(index < 0 ? textRows.size() : index, (TextRow) view);
+			requestLayout();
+			invalidate();
+		} else {
+			addView(view, index);
+		}
+	}
+
+	/**
+	 * Removes a message View that has been added by {@link #attachMessageView(View, int)}.
+	 */
+	private void detachMessageView(View view) {
+		if (view instanceof TextRow) {
+			if (textRows.remove(view)) {
+				requestLayout();
+				invalidate();
+			}
+		} else {
+			removeView(view);
+		}
+	}
+
+	/**
+	 * Adds the displayed message Views and rows to {@code out}, in display order.
+	 */
+	void collectMessageViews(ArrayList<View> out) {
+		out.addAll(textRows);
+		for (int i = 0; i < getChildCount(); i++) {
+			out.add(getChildAt(i));
+		}
+	}
+
+	boolean isMessageViewAttached(View view) {
+		return view instanceof TextRow ? textRows.contains(view) : view.getParent() == this;
+	}
+
+	private TextPaint getTextPaint() {
+		if (textPaint == null) {
+			TextView textView = new TextView(getContext());
+			textPaint = new TextPaint(textView.getPaint());
+			textPaint.setColor(textView.getCurrentTextColor());
+		}
+		return textPaint;
+	}
+
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+		if (textRows.isEmpty()) {
+			return;
+		}
+
+		int rowWidth = getMeasuredWidth() - getPaddingLeft() - getPaddingRight();
+		int rowsHeight = 0;
+		for (TextRow row : textRows) {
+			rowsHeight += row.measureRow(rowWidth, getTextPaint());
+		}
+		if (MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.EXACTLY) {
+			// the child Views are laid out below the rows, as this layout has gravity BOTTOM
+			setMeasuredDimension(getMeasuredWidth(),
+					resolveSize(getMeasuredHeight() + rowsHeight, heightMeasureSpec));
+		}
+	}
+
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		TextLayoutPrecomputer precomputer = textLayoutPrecomputer;
+		if (precomputer != null && w != oldw) {
+			precomputer.setWidth(getMessageTextWidth());
+		}
+	}
+
+	@Override
+	protected void onLayout(boolean changed, int l, int t, int r, int b) {
+		super.onLayout(changed, l, t, r, b);
+
+		int top = getPaddingTop();
+		for (TextRow row : textRows) {
+			int height = row.getRowHeight();
+			row.layout(getPaddingLeft(), top, r - l - getPaddingRight(), top + height);
+			top += height;
+		}
+	}
+
+	@Override
+	protected void dispatchDraw(Canvas canvas) {
+		boolean animating = resizeAnimator != null;
+		for (int i = 0; i < textRows.size(); i++) {
+			TextRow row = textRows.get(i);
+			row.drawRow(canvas);
+			animating |= row.getTag(R.id.torch_view_animator) != null;
+		}
+		super.dispatchDraw(canvas);
+
+		if (animating && !textRows.isEmpty()) {
+			// rows are not Views of this window: draw the next frame of their animations
+			invalidate();
+		}
+	}
+
+	@Override
+	public boolean onInterceptTouchEvent(MotionEvent event) {
+		return swipeDismissHelper.onInterceptTouchEvent(event) || super.onInterceptTouchEvent(event);
+	}
+
+	@Override
+	public boolean onTouchEvent(MotionEvent event) {
+		return swipeDismissHelper.onTouchEvent(event) || super.onTouchEvent(event);
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (!hasBeenAttached) {
+			// the Activity restores saved state before its window is attached
+			hasBeenAttached = true;
+			scheduleIdleDetach();
+		}
+
+		// display-timers have been cancelled on detach: displayed messages get their full time again
+		for (int slot = 0; slot < mViews.capacity(); slot++) {
+			Message message = mViews.valueAt(slot) != null ? currentMessages.get(mViews.keyAt(slot)) : null;
+			if (message != null && !expiryTimers.containsKey(message.key)) {
+				startExpiryTimer(message);
+			}
+		}
+		// and so has the time-to-live sweep of the queue
+		if (messageQueue.hasExpiringMessages()) {
+			scheduleExpirySweep();
+		}
+		readQueue();
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		cancelScheduledWork();
+		swipeDismissHelper.release();
+	}
+
+	/**
+	 * Cancels all callbacks and animations this View has scheduled, so none of them runs while it
+	 * is detached or holds on to its messages and Views. Animations jump to their end: messages that
+	 * were animating in stay displayed, messages that were animating out are removed.
+	 */
+	private void cancelScheduledWork() {
+		scope.cancelAll();
+		// the timers of the messages that have just been displayed by the animations above
+		expiryWheel.clear();
+		expiryTimers.clear();
+		removingMessage = false;
+	}
+
+	/**
+	 * Resets a View that has been removed from this container and keeps it for reuse.
+	 */
+	private void recycleMessageView(View view) {
+		Object viewType = view.getTag(R.id.torch_view_type);
+		boolean reusable = view instanceof TextRow || (viewBuilder == null && defaultViewsReusable)
+				|| viewBuilder instanceof RecyclingViewBuilder;
+		if (!reusable || !(viewType instanceof Integer)) {
+			// built by a ViewBuilder or a getView() that doesn't support reuse
+			return;
+		}
+
+		// undo state left by animations and swipes
+		cancelViewAnimator(view);
+		ViewPropertyAnimator.animate(view).cancel();
+		ViewHelper.setAlpha(view, 1f);
+		ViewHelper.setTranslationX(view, 0);
+		ViewHelper.setTranslationY(view, 0);
+		view.setTag(R.id.torch_view_message, null);
+
+		if (view instanceof TextRow) {
+			((TextRow) view).bind(null);
+		} else if (viewBuilder instanceof RecyclingViewBuilder) {
+			((RecyclingViewBuilder) viewBuilder).unbindView(view);
+		}
+		viewPool.release((Integer) viewType, view);
+	}
+
+	/**
+	 * Removes all message Views from this container and keeps them for reuse.
+	 */
+	private void recycleAllMessageViews() {
+		if (!textRows.isEmpty()) {
+			for (int i = textRows.size() - 1; i >= 0; i--) {
+				recycleMessageView(textRows.remove(i));
+			}
+			requestLayout();
+		}
+		for (int i = getChildCount() - 1; i >= 0; i--) {
+			View view = getChildAt(i);
+			removeViewAt(i);
+			recycleMessageView(view);
+		}
+	}
+
+	private void onMessageRemoved(Message message) {
+		message = resolve(message);
+		cancelExpiryTimer(message);
+
+		// if we dismissed item, remove it from pendingRemovals
+		pendingRemovals.remove(message.key);
+		currentMessages.remove(message.key);
+		releaseMessage(message);
+		readQueue();
+	}
+
+	/**
+	 * Listener for the animation of a single operation, which tells whether the animation ran to
+	 * its end or has been cancelled to make way for another operation.
+	 */
+	private abstract static class OperationListener extends AnimatorListenerAdapter {
+		private boolean cancelled = false;
+
+		@Override
+		public void onAnimationCancel(Animator animation) {
+			cancelled = true;
+		}
+
+		@Override
+		public void onAnimationEnd(Animator animation) {
+			onOperationEnd(animation, cancelled);
+		}
+
+		abstract void onOperationEnd(Animator animation, boolean cancelled);
+	}
+
+	/**
+	 * Starts {@code animator} as the only animation of {@code view}. A running animation of the view
+	 * is cancelled, and {@code animator} continues from the current state of the view instead of
+	 * from its own start values.
+	 */
+	private void startViewAnimator(final View view, Animator animator, Animator.AnimatorListener listener) {
+		if (cancelViewAnimator(view)) {
+			animator.setupStartValues();
+		}
+		view.setTag(R.id.torch_view_animator, animator);
+		animator.addListener(new AnimatorListenerAdapter() {
+			@Override
+			public void onAnimationEnd(Animator animation) {
+				if (view.getTag(R.id.torch_view_animator) == animation) {
+					view.setTag(R.id.torch_view_animator, null);
+				}
+			}
+		});
+		animator.addListener(listener);
+		scope.track(animator);
+		animator.start();
+		if (view instanceof TextRow) {
+			// dispatchDraw() keeps drawing frames while a row animates
+			invalidate();
+		}
+	}
+
+	/**
+	 * Cancels the animation started by {@link #startViewAnimator(View, Animator,
+	 * Animator.AnimatorListener)} for {@code view}, if any.
+	 *
+	 * @return {@code true} if an animation was running.
+	 */
+	private boolean cancelViewAnimator(View view) {
+		Object animator = view.getTag(R.id.torch_view_animator);
+		view.setTag(R.id.torch_view_animator, null);
+		if (animator instanceof Animator && ((Animator) animator).isRunning()) {
+			((Animator) animator).cancel();
+			return true;
+		}
+		return false;
+	}
+
+	private void cancelChildAnimators() {
+		// cancelling an out-animation removes its View
+		for (int i = textRows.size() - 1; i >= 0; i--) {
+			if (i < textRows.size()) {
+				cancelViewAnimator(textRows.get(i));
+			}
+		}
+		for (int i = getChildCount() - 1; i >= 0; i--) {
+			if (i < getChildCount()) {
+				cancelViewAnimator(getChildAt(i));
+			}
+		}
+	}
+
+	/**
+	 * Cancels the show- or hide-animation of the container, if any.
+	 *
+	 * @return {@code true} if an animation was running.
+	 */
+	private boolean cancelContainerAnimator() {
+		Animator animator = containerAnimator;
+		containerAnimator = null;
+		if (animator != null && animator.isRunning()) {
+			animator.cancel();
+			return true;
+		}
+		return false;
+	}
+
+	private void showContainer(final Message[] messages) {
+		// a running hide-animation removes its Views when cancelled
+		boolean retarget = cancelContainerAnimator();
 
-	private void showContainer(final Message initialMessage, Animator... animators) {
-		ArrayList<Animator> additionalAnimators = new ArrayList<Animator>(Arrays.asList(animators));
+		for (Message message : messages) {
+			View messageView = getMessageView(message);
+			attachMessageView(messageView, -1);
+			mViews.put(message.key, messageView);
+		}
 
+		containerShown = true;
 		setVisibility(View.VISIBLE);
+		if (manager != null) {
+			// this channel takes up space between the other channels again
+			ArrayList<View> addedViews = new ArrayList<View>();
+			addedViews.add(this);
+			collectMessageViews(addedViews);
+			manager.resize(addedViews.toArray(new View[addedViews.size()]));
+		}
 
-		Animator showAnimator = AnimatorInflater.loadAnimator(getContext(), inAnimationResource);
+		Animator showAnimator = animatorCache.loadAnimator(getContext(), inAnimationResource);
 		showAnimator.setTarget(this);
+		HardwareLayerListener.attach(showAnimator, getLayerViews(messages));
 		if (showAnimator.getDuration() > 0) {
 			displayAnimationDuration = showAnimator.getDuration();
 		} else {
 			showAnimator.setDuration(displayAnimationDuration);
 		}
+		if (retarget) {
+			showAnimator.setupStartValues();
+		}
 
-		additionalAnimators.add(showAnimator);
-
-		AnimatorSet set = new AnimatorSet();
-		set.setDuration(displayAnimationDuration);
-		set.playTogether(additionalAnimators);
-		set.addListener(new AnimatorListenerAdapter() {
+		showAnimator.addListener(new OperationListener() {
 			@Override
-			public void onAnimationStart(Animator animation) {
-				isAnimating = true;
+			void onOperationEnd(Animator animation, boolean cancelled) {
+				if (containerAnimator == animation) {
+					containerAnimator = null;
+				}
+				if (!cancelled) {
+					// start timers for initial messages
+					for (Message message : messages) {
+						onMessageDisplayed(message);
+					}
+				}
 			}
+		});
 
-			@Override
-			public void onAnimationEnd(Animator animation) {
-				isAnimating = false;
+		containerAnimator = showAnimator;
+		scope.track(showAnimator);
+		showAnimator.start();
+	}
 
-				// start timer for initial message
-				onMessageDisplayed(initialMessage);
+	/**
+	 * Returns the Views to render into hardware layers while the whole container is animated: the
+	 * container itself, unless none of {@code messages} wants a hardware layer.
+	 */
+	private View[] getLayerViews(Message[] messages) {
+		for (Message message : messages) {
+			if (message.isHardwareLayerEnabled()) {
+				return new View[]{this};
 			}
-		});
-
-		set.start();
+		}
+		return new View[0];
 	}
 
 	private void hideContainer(final Message... messages) {
-		Animator animator = AnimatorInflater.loadAnimator(getContext(), outAnimationResource);
+		boolean retarget = cancelContainerAnimator();
+		containerShown = false;
+
+		// keys of the messages now: a message that is removed meanwhile may be recycled and reused
+		final long[] keys = new long[messages.length];
+		for (int i = 0; i < messages.length; i++) {
+			keys[i] = messages[i].key;
+		}
+
+		Animator animator = animatorCache.loadAnimator(getContext(), outAnimationResource);
 		animator.setTarget(this);
 		if (animator.getDuration() <= 0) {
 			animator.setDuration(displayAnimationDuration);
 		}
+		HardwareLayerListener.attach(animator, getLayerViews(messages));
+		if (retarget) {
+			animator.setupStartValues();
+		}
 
-		animator.addListener(new AnimatorListenerAdapter() {
-			@Override
-			public void onAnimationStart(Animator animation) {
-				isAnimating = true;
-			}
-
+		animator.addListener(new OperationListener() {
 			@Override
-			public void onAnimationEnd(Animator animation) {
-				isAnimating = false;
-				setVisibility(View.GONE);
-				removeAllViews();
-
-				// update state of final message
-				for (Message message : messages) {
-					onMessageRemoved(message);
+			void onOperationEnd(Animator animation, boolean cancelled) {
+				if (containerAnimator == animation) {
+					containerAnimator = null;
 				}
-			}
-
-			@Override
-			public void onAnimationCancel(Animator animation) {
-				isAnimating = false;
+				if (!cancelled) {
+					setVisibility(View.GONE);
+					if (manager != null) {
+						manager.resize();
+					}
+				}
+				cancelChildAnimators();
+				recycleAllMessageViews();
+
+				// update state of final message, unless it has been removed already
+				for (long key : keys) {
+					Message message = currentMessages.get(key);
+					if (message != null) {
+						onMessageRemoved(message);
+					}
+				}
+				scheduleIdleDetach();
 			}
 		});
+
+		containerAnimator = animator;
+		scope.track(animator);
 		animator.start();
 	}
 
 	public void clear(boolean interrupt) {
+		ArrayList<Message> cleared = new ArrayList<Message>();
 
+		if (interrupt) {
+			messageIds.clear();
+			if (journal != null) {
+				journal.clear();
+				journalReplay = null;
+			}
+			for (Message message : messageQueue) {
+				cleared.add(message);
+			}
+		} else {
+			for (Message message : messageQueue) {
+				releaseMessage(message);
+			}
+		}
 		this.messageQueue.clear();
+		Message ingress;
+		while ((ingress = ingressQueue.poll()) != null) {
+			cleared.add(ingress);
+		}
+		recyclePrefetchedViews(null, 0);
 
 		if (interrupt) {
+			cancelScheduledWork();
+			containerShown = false;
+			setVisibility(View.GONE);
+
+			for (int slot = 0; slot < currentMessages.capacity(); slot++) {
+				if (currentMessages.valueAt(slot) != null) {
+					cleared.add(currentMessages.valueAt(slot));
+				}
+			}
 			currentMessages.clear();
-			removalQueue.clear();
+			pendingRemovals.clear();
 
-			for (View v : mViews.values()) {
-				// cancel running animations
-				ViewPropertyAnimator.animate(v).cancel();
+			for (int slot = 0; slot < mViews.capacity(); slot++) {
+				View v = mViews.valueAt(slot);
+				if (v != null) {
+					// cancel running animations
+					ViewPropertyAnimator.animate(v).cancel();
+				}
 			}
 			mViews.clear();
-			removeAllViews();
+			recycleAllMessageViews();
+		}
+		for (Message message : cleared) {
+			message.recycleIfPooled();
 		}
+		scheduleIdleDetach();
 	}
 
 	public void setInAnimationResource(int inAnimationResource) {
@@ -406,20 +1878,165 @@ public class TorchView extends LinearLayout {
 		this.outAnimationResource = outAnimationResource;
 	}
 
+	/**
+	 * Adds {@code message} to the queue and shows it as soon as possible. Can be called from any
+	 * thread.
+	 *
+	 * @param message The {@link net.cappital.torch.Message} to show.
+	 */
 	public void show(Message message) {
-		add(message);
-		show();
+		message.checkNotRecycled();
+		precomputeTextLayout(message);
+		if (isMainThread()) {
+			drainIngressQueue();
+			add(message);
+			readQueue();
+		} else {
+			ingressQueue.offer(message);
+			scheduleIngress();
+		}
 	}
 
+	/**
+	 * Adds {@code messages} to the queue and shows them as soon as possible. Can be called from any
+	 * thread.
+	 *
+	 * @param messages The {@link net.cappital.torch.Message Messages} to show.
+	 */
 	public void show(ArrayList<Message> messages) {
 		for (Message msg : messages) {
-			add(msg);
+			msg.checkNotRecycled();
+			precomputeTextLayout(msg);
+		}
+		if (isMainThread()) {
+			drainIngressQueue();
+			for (Message msg : messages) {
+				add(msg);
+			}
+			readQueue();
+		} else {
+			ingressQueue.addAll(messages);
+			scheduleIngress();
 		}
-		show();
 	}
 
+	/**
+	 * Resumes showing queued messages, for example after the state of this View has been restored.
+	 * Can be called from any thread.
+	 */
 	public void show() {
-		readQueue();
+		if (isMainThread()) {
+			drainIngressQueue();
+			readQueue();
+		} else {
+			scheduleIngress();
+		}
+	}
+
+	private static boolean isMainThread() {
+		return Looper.myLooper() == Looper.getMainLooper();
+	}
+
+	/**
+	 * Posts {@link #drainIngressQueue} to the main thread, unless it is already pending.
+	 */
+	private void scheduleIngress() {
+		if (ingressScheduled.compareAndSet(false, true)) {
+			mainHandler.post(drainIngressQueue);
+		}
+	}
+
+	/**
+	 * Moves all messages from {@link #ingressQueue} into the queue. Must be called on the main
+	 * thread.
+	 */
+	private void drainIngressQueue() {
+		// reset first: messages offered from now on will schedule another drain
+		ingressScheduled.set(false);
+
+		Message message;
+		while ((message = ingressQueue.poll()) != null) {
+			add(message);
+		}
+	}
+
+	/**
+	 * Shows {@code message}, or updates the queued or displayed message with the same {@link
+	 * Message#getId() ID} in place.
+	 * <p/>
+	 * A displayed message keeps its View and position: the View is updated with the contents of
+	 * {@code message} (see {@link ViewBinder} and {@link #bindView(View, Message)}) and its
+	 * display-timer restarts, without running any animations. A queued message is replaced without
+	 * changing its position in the queue. Messages without an ID are shown like {@link
+	 * #show(Message)}.
+	 *
+	 * @param message The {@link net.cappital.torch.Message} to show.
+	 */
+	public void update(Message message) {
+		message.checkNotRecycled();
+		drainIngressQueue();
+
+		Message oldMessage = message.getId() > 0 ? messageIds.get(message.getId()) : null;
+		if (oldMessage == null) {
+			show(message);
+			return;
+		}
+		precomputeTextLayout(message);
+
+		if (messageQueue.replace(oldMessage, message)) {
+			messageIds.put(message.getId(), message);
+			message.key = oldMessage.key;
+			replaceJournalRecord(oldMessage, message);
+			message.queuedAt = oldMessage.queuedAt;
+			View prefetched = prefetchedViews.remove(message.key);
+			if (prefetched != null) {
+				// bound to the old contents
+				recycleMessageView(prefetched);
+			}
+			if (oldMessage != message) {
+				oldMessage.recycleIfPooled();
+			}
+			return;
+		}
+
+		View view = mViews.get(oldMessage.key);
+		if (view == null) {
+			// old message is already on its way out: show update as a new message
+			if (oldMessage != message) {
+				// the old message is leaving: the update is no duplicate of it
+				messageIds.remove(message.getId());
+				add(message);
+				readQueue();
+			}
+			return;
+		}
+
+		// the new message takes over the key, so pending callbacks for the old message resolve to it
+		// the old displayed message is not recycled: pending callbacks still resolve through it
+		message.key = oldMessage.key;
+		currentMessages.put(message.key, message);
+		replaceJournalRecord(oldMessage, message);
+		pendingRemovals.remove(message.key);
+		messageIds.put(message.getId(), message);
+
+		mViews.put(message.key, rebindMessageView(view, message));
+
+		// restart timer; a swapped View may have lost its in-animation, and with it the start of the
+		// timer. If the message is still animating in, the timer restarts once it is displayed.
+		cancelExpiryTimer(oldMessage);
+		startExpiryTimer(message);
+	}
+
+	/**
+	 * Writes {@code message} to the journal in place of {@code oldMessage}, keeping its position.
+	 */
+	private void replaceJournalRecord(Message oldMessage, Message message) {
+		if (journal != null) {
+			long seq = oldMessage.journalSeq;
+			oldMessage.journalSeq = 0;
+			message.journalSeq = seq;
+			journal.put(message, journalOwner);
+		}
 	}
 
 	/**
@@ -430,28 +2047,155 @@ public class TorchView extends LinearLayout {
 	private void add(Message message) {
 		// skip message with ID's if duplicate is found in currently displayed messages or queue
 		if (message.getId() > 0) {
-			boolean itemFound = findMessage(message, currentMessages)
-					|| findMessage(message, messageQueue);
-
-			if (itemFound) {
+			if (messageIds.containsKey(message.getId())) {
 				// skip item: already in queue
+				if (messageIds.get(message.getId()) != message) {
+					if (journal != null) {
+						journal.remove(message);
+					}
+					message.recycleIfPooled();
+				}
+				return;
+			}
+		}
+
+		// make room in a full queue, or drop message
+		if (isQueueFull(message)) {
+			removeExpiredMessages();
+		}
+		while (isQueueFull(message)) {
+			Message oldest = messageQueue.peekOldest();
+			Message lowestPriority = messageQueue.peekLowest();
+			Message dropped = overflowPolicy.selectMessageToDrop(message, oldest, lowestPriority);
+
+			if (dropped == oldest && dropped != null) {
+				releaseMessage(messageQueue.pollOldest());
+			} else if (dropped == lowestPriority && dropped != null) {
+				releaseMessage(messageQueue.pollLowest());
+			} else {
+				if (journal != null) {
+					journal.remove(message);
+				}
+				if (!(overflowPolicy instanceof RejectPolicy)) {
+					// a rejected message is left to the listener, which may show it again
+					message.recycleIfPooled();
+				}
 				return;
 			}
 		}
 
-		messageQueue.add(message);
+		if (message.getId() > 0) {
+			messageIds.put(message.getId(), message);
+		}
+		assignKey(message);
+		message.queuedAt = SystemClock.uptimeMillis();
+		messageQueue.offer(message);
+		if (journal != null && message.journalSeq == 0) {
+			journal.put(message, journalOwner);
+		}
+		attachIfDetached();
+
+		if (message.getTimeToLive() > 0) {
+			scheduleExpirySweep();
+		}
+		schedulePrefetch();
+	}
+
+	private void scheduleExpirySweep() {
+		if (!expirySweep.isPending()) {
+			expirySweep.postDelayed(EXPIRY_SWEEP_INTERVAL);
+		}
+	}
+
+	/**
+	 * Drops all queued messages that have passed their {@link Message#setTimeToLive(long)
+	 * time-to-live}.
+	 *
+	 * @return Whether queued messages with a time-to-live remain.
+	 */
+	private boolean removeExpiredMessages() {
+		if (!messageQueue.hasExpiringMessages()) {
+			return false;
+		}
+		ArrayList<Message> expired = new ArrayList<Message>();
+		boolean remaining = messageQueue.removeExpired(SystemClock.uptimeMillis(), expired);
+		for (Message message : expired) {
+			releaseMessage(message);
+		}
+		return remaining;
+	}
+
+	/**
+	 * Returns the next queued message that has not passed its {@link Message#setTimeToLive(long)
+	 * time-to-live}, dropping expired messages on the way.
+	 *
+	 * @param now Current time in {@link SystemClock#uptimeMillis()}.
+	 *
+	 * @return The next message, or {@code null} if the queue holds no valid messages.
+	 */
+	private Message peekQueue(long now) {
+		Message message = messageQueue.peek();
+		while (message != null && message.isExpired(now)) {
+			releaseMessage(messageQueue.poll());
+			message = messageQueue.peek();
+		}
+		return message;
+	}
+
+	/**
+	 * Returns whether adding {@code message} would exceed the capacity of the queue. An empty queue
+	 * always accepts a message.
+	 */
+	private boolean isQueueFull(Message message) {
+		if (messageQueue.isEmpty()) {
+			return false;
+		}
+		return (queueCapacity > 0 && messageQueue.size() >= queueCapacity)
+				|| (queueCapacityBytes > 0
+				&& messageQueue.estimatedBytes() + message.getEstimatedSize() > queueCapacityBytes);
+	}
+
+	/**
+	 * Forgets {@code message}, which has been removed, has expired or has been dropped, and returns
+	 * it to the pool if it has been obtained from there.
+	 */
+	private void releaseMessage(Message message) {
+		unindexMessage(message);
+		if (journal != null) {
+			journal.remove(message);
+		}
+		message.recycleIfPooled();
+	}
+
+	/**
+	 * Removes {@code message} from {@link #messageIds}, but only if the index still refers to this
+	 * exact instance; a later message with the same ID is left untouched.
+	 */
+	private void unindexMessage(Message message) {
+		if (message.getId() > 0 && messageIds.get(message.getId()) == message) {
+			messageIds.remove(message.getId());
+		}
 	}
 
-	private void dismissView(final Message message) {
-		View mView = mViews.remove(message);
+	private void dismissView(Message message) {
+		message = resolve(message);
+		View mView = mViews.remove(message.key);
 
-		if (mViews.size() == 0) {
+		boolean hiding = mViews.size() == 0;
+		if (hiding) {
+			// the hide animation removes the message when it ends or is cancelled
 			hideContainer(message);
 		}
 
 		if (mView != null) {
-			removeView(mView);
-			onMessageRemoved(message);
+			detachMessageView(mView);
+			recycleMessageView(mView);
+			if (hiding) {
+				cancelExpiryTimer(message);
+				readQueue();
+			} else {
+				onMessageRemoved(message);
+			}
 		}
 	}
 
@@ -461,8 +2205,9 @@ public class TorchView extends LinearLayout {
 	 * @param message The {@link net.cappital.torch.Message} to be removed.
 	 */
 	private void removeMessage(Message message) {
-		if (currentMessages.contains(message)) {
-			removalQueue.offer(message);
+		message = resolve(message);
+		if (mViews.containsKey(message.key)) {
+			pendingRemovals.put(message.key, message);
 			readQueue();
 		}
 	}
@@ -476,202 +2221,222 @@ public class TorchView extends LinearLayout {
 	 * happening to the View.
 	 */
 	private void clearRemoveStatus() {
-		postDelayed(new Runnable() {
-			@Override
-			public void run() {
-				removingMessage = false;
-				readQueue();
-			}
-		}, delayBetweenMessages);
+		clearRemoveStatus.postDelayed(delayBetweenMessages);
 	}
 
+	/**
+	 * Schedules {@link #readNext()} for the next frame.
+	 */
 	private void readQueue() {
-		// post because want to finish previous execution before continuing
-		post(new Runnable() {
-			@Override
-			public void run() {
-				readNext();
-			}
-		});
+		if (manager != null) {
+			manager.scheduleRead(this);
+		} else {
+			queueReader.schedule();
+			scope.add(queueReader);
+		}
 	}
 
 	/**
-	 * Reads the queue and performs required actions: add/remove/replace Views.
+	 * Reads the queue and performs all required actions as a single batch: removes expired
+	 * messages, moves queued messages into free slots and lets queued messages preempt displayed
+	 * messages with a lower priority. All resulting View changes are animated together.
 	 */
-	private void readNext() {
+	void readNext() {
+		scope.remove(queueReader);
+		if (isIdle()) {
+			// nothing to do; don't disturb a pending idle detach
+			return;
+		}
+
 		// check if state is OK
 		if (getParent() == null || !(getParent() instanceof ViewGroup)) {
+			if (hasBeenAttached) {
+				// detached meanwhile: onAttachedToWindow() continues with the queue
+				return;
+			}
 			throw new RuntimeException("TorchView has no parent View");
 		}
 
-		if (!removingMessage && !isAnimating) {
-			Message removeMessage = removalQueue.poll();
-			if (removeMessage != null) {
-				removingMessage = true;
-
-				Message addMessage = messageQueue.size() > 0 ? messageQueue.remove(0) : null;
-				if (addMessage == null) {
-					removeMessageView(removeMessage);
-				} else {
-					currentMessages.add(addMessage);
-					replaceMessageView(removeMessage, addMessage);
-				}
-				clearRemoveStatus();
-
-			} else if (maxConcurrent > currentMessages.size()) {
-				// more space available: move message from queue to currentMessages
-				Message addMessage = messageQueue.size() > 0 ? messageQueue.remove(0) : null;
-				if (addMessage != null) {
-					currentMessages.add(addMessage);
-					addMessageView(addMessage);
-				}
-			}// else ignore; readQueue() will be called again when space is available
+		if (removingMessage) {
+			// readQueue() will be called again when done
+			return;
 		}
-	}
-
-	private void addMessageView(final Message message) {
-		final View messageView = getMessageView(message);
-		addView(messageView);
-		mViews.put(message, messageView);
-
-		final Animator addAnimation = AnimatorInflater.loadAnimator(getContext(), message.getInAnimationResource());
-		addAnimation.setTarget(messageView);
 
-		if (getChildCount() == 1) {
-			// show wrapper & notify manager when done
-			showContainer(message);
+		ArrayList<Message> removals = batchRemovals;
+		ArrayList<Message> additions = batchAdditions;
 
-		} else {
-			addAnimation.setDuration(displayAnimationDuration);
-			resizeContainer(new AnimatorListenerAdapter() {
-				@Override
-				public void onAnimationStart(Animator animation) {
-					isAnimating = true;
-				}
-
-				@Override
-				public void onAnimationEnd(Animator animation) {
-					isAnimating = false;
-					onMessageDisplayed(message);
-				}
+		for (int slot = 0; slot < pendingRemovals.capacity(); slot++) {
+			Message message = pendingRemovals.valueAt(slot);
+			if (message != null && mViews.containsKey(message.key)) {
+				removals.add(message);
+			}
+		}
+		pendingRemovals.clear();
+
+		// more space available: move messages from queue to currentMessages, skipping expired ones
+		long now = SystemClock.uptimeMillis();
+		// messages that are animating out don't take a slot anymore
+		int slots = maxConcurrent - mViews.size() + removals.size();
+		while (additions.size() < slots && peekQueue(now) != null) {
+			additions.add(messageQueue.poll());
+		}
+		requestJournalReplay();
 
-				@Override
-				public void onAnimationCancel(Animator animation) {
-					isAnimating = false;
-				}
-			}, addAnimation);
+		// no space available: replace displayed messages with a lower priority, if any
+		while (peekQueue(now) != null) {
+			Message preemptedMessage = findPreemptableMessage(messageQueue.peek().getPriority(), removals);
+			if (preemptedMessage == null) {
+				break;
+			}
+			removals.add(preemptedMessage);
+			additions.add(messageQueue.poll());
 		}
-	}
 
-	private void removeMessageView(final Message message) {
-		if (getChildCount() <= 1) {
-			// down to last message, which is now expired.. hide wrapper
-			hideContainer(message);
+		if (removals.isEmpty() && additions.isEmpty()) {
+			// nothing to do; readQueue() will be called again when something changes
+			return;
+		}
 
-		} else {
-			final View view = mViews.remove(message);
-			if (view != null) {
-				// oldMessage -> out-animation
-				Animator removeAnimation = AnimatorInflater.loadAnimator(getContext(), message.getOutAnimationResource());
-				removeAnimation.setTarget(view);
-				removeAnimation.setDuration(moveAnimationDuration);
-
-				removeAnimation.addListener(new AnimatorListenerAdapter() {
-					@Override
-					public void onAnimationStart(Animator animation) {
-						isAnimating = true;
-					}
+		Message[] removed = removals.toArray(new Message[removals.size()]);
+		Message[] added = additions.toArray(new Message[additions.size()]);
+		removals.clear();
+		additions.clear();
 
-					@Override
-					public void onAnimationEnd(Animator animation) {
-						// remove View and resize container
-						removeView(view);
+		for (Message message : added) {
+			currentMessages.put(message.key, message);
+		}
+		if (removed.length > 0) {
+			removingMessage = true;
+			clearRemoveStatus();
+		}
 
-						resizeContainer(new AnimatorListenerAdapter() {
-							@Override
-							public void onAnimationEnd(Animator animation) {
-								isAnimating = false;
-								onMessageRemoved(message);
-							}
-						});
-					}
-				});
+		replaceMessageViews(removed, added);
+		schedulePrefetch();
+	}
 
-				removeAnimation.start();
+	/**
+	 * Finds the displayed message that should make room for a queued message with {@code priority}:
+	 * the oldest message with the lowest priority below {@code priority} that is not already being
+	 * removed.
+	 *
+	 * @param priority The priority of the message that wants to be displayed.
+	 * @param removals Messages that are already being removed.
+	 *
+	 * @return The message to replace, or {@code null} if no message can be preempted.
+	 */
+	private Message findPreemptableMessage(int priority, ArrayList<Message> removals) {
+		Message lowest = null;
+		for (int slot = 0; slot < currentMessages.capacity(); slot++) {
+			Message message = currentMessages.valueAt(slot);
+			if (message == null || message.getPriority() >= priority
+					|| !mViews.containsKey(message.key) || removals.contains(message)) {
+				continue;
+			}
+			// keys increase in queue order, so the lowest key is the oldest message
+			if (lowest == null || message.getPriority() < lowest.getPriority()
+					|| (message.getPriority() == lowest.getPriority() && message.key < lowest.key)) {
+				lowest = message;
 			}
 		}
+		return lowest;
 	}
 
-	private void replaceMessageView(final Message oldMessage, final Message newMessage) {
-
-		Log.d(TAG, "replaceMessageView()");
-
-		final View oldView = mViews.remove(oldMessage);
-		if (oldView == null) {
-			addMessageView(newMessage);
-		} else {
-			Log.d(TAG, "oldView != null");
-			ArrayList<Animator> animators = new ArrayList<Animator>();
+	/**
+	 * Animates a batch of changes: the Views of {@code removed} are animated out while the Views of
+	 * {@code added} are animated in. Running animations of the same Views or of the container are
+	 * retargeted instead of waited for.
+	 *
+	 * @param removed Displayed messages to remove.
+	 * @param added   Messages to display; these are already part of {@link #currentMessages}.
+	 */
+	private void replaceMessageViews(final Message[] removed, final Message[] added) {
+		final View[] removedViews = new View[removed.length];
+		for (int i = 0; i < removed.length; i++) {
+			removedViews[i] = mViews.remove(removed[i].key);
+		}
 
-			// oldMessage -> out-animation
-			Animator messageAnim = AnimatorInflater.loadAnimator(getContext(), oldMessage.getOutAnimationResource());
-			messageAnim.setTarget(oldView);
-			animators.add(messageAnim);
+		if (added.length == 0 && mViews.isEmpty()) {
+			// down to last messages, which are now expired.. hide wrapper
+			hideContainer(removed);
+			return;
+		}
 
-			// other messages -> animate up
-			Animator moveAnimation;
-			for (View v : mViews.values()) {
-				moveAnimation = ObjectAnimator.ofFloat(v, "translationY", 0f, -oldView.getHeight());
-				animators.add(moveAnimation);
+		if (removed.length > 0) {
+			removeMessageViews(removed, removedViews);
+		}
+		if (added.length > 0) {
+			if (!containerShown) {
+				// show wrapper & notify manager when done
+				showContainer(added);
+			} else {
+				addMessageViews(added);
 			}
+		}
+	}
 
-			final View newMessageView = getMessageView(newMessage);
-			mViews.put(newMessage, newMessageView);
-
-			AnimatorSet set = new AnimatorSet();
-			set.playTogether(animators);
-			set.setDuration(moveAnimationDuration);
-			set.addListener(new AnimatorListenerAdapter() {
-				@Override
-				public void onAnimationStart(Animator animation) {
-					isAnimating = true;
-				}
+	/**
+	 * Animates the Views of {@code messages} out, and resizes the container once they are all
+	 * gone.
+	 */
+	private void removeMessageViews(final Message[] messages, final View[] views) {
+		final int[] remaining = {messages.length};
+		for (int i = 0; i < messages.length; i++) {
+			final Message message = messages[i];
+			final View view = views[i];
+
+			Animator removeAnimation = animatorCache.loadAnimator(getContext(), message.getOutAnimationResource());
+			removeAnimation.setTarget(view);
+			removeAnimation.setDuration(moveAnimationDuration);
+			if (message.isHardwareLayerEnabled()) {
+				HardwareLayerListener.attach(removeAnimation, view);
+			}
 
+			startViewAnimator(view, removeAnimation, new OperationListener() {
 				@Override
-				public void onAnimationEnd(Animator animation) {
-					removeView(oldView);
-					onMessageRemoved(oldMessage);
+				void onOperationEnd(Animator animation, boolean cancelled) {
+					detachMessageView(view);
+					recycleMessageView(view);
+					onMessageRemoved(message);
 
-					for (View v : mViews.values()) {
-						ViewHelper.setTranslationY(v, 0);
+					// close the gaps of the whole batch at once
+					if (--remaining[0] == 0 && containerShown) {
+						resizeContainer();
 					}
-
-					addView(newMessageView);
-					Animator addAnimation = AnimatorInflater.loadAnimator(getContext(), newMessage.getInAnimationResource());
-					addAnimation.setTarget(newMessageView);
-					addAnimation.setDuration(resizeAnimationDuration);
-					addAnimation.addListener(new AnimatorListenerAdapter() {
-						@Override
-						public void onAnimationEnd(Animator animation) {
-							isAnimating = false;
-							onMessageDisplayed(newMessage);
-						}
-					});
-					addAnimation.start();
 				}
 			});
-			set.start();
 		}
 	}
 
-	private boolean findMessage(Message message, Collection<Message> collection) {
-		Collection<Message> messages = Collections.synchronizedCollection(collection);
-		for (Message m : messages) {
-			if (message.getId() == m.getId()) {
-				return true;
+	/**
+	 * Adds the Views of {@code messages} and animates them in while the container resizes.
+	 */
+	private void addMessageViews(final Message[] messages) {
+		View[] addedViews = new View[messages.length];
+		for (int i = 0; i < messages.length; i++) {
+			final Message message = messages[i];
+			View messageView = getMessageView(message);
+			attachMessageView(messageView, -1);
+			mViews.put(message.key, messageView);
+			addedViews[i] = messageView;
+
+			Animator addAnimation = animatorCache.loadAnimator(getContext(), message.getInAnimationResource());
+			addAnimation.setTarget(messageView);
+			addAnimation.setDuration(resizeAnimationDuration);
+			if (message.isHardwareLayerEnabled()) {
+				HardwareLayerListener.attach(addAnimation, messageView);
 			}
+
+			startViewAnimator(messageView, addAnimation, new OperationListener() {
+				@Override
+				void onOperationEnd(Animator animation, boolean cancelled) {
+					if (!cancelled) {
+						onMessageDisplayed(message);
+					}
+				}
+			});
 		}
-		return false;
+
+		resizeContainer(addedViews);
 	}
 
 	@Override
@@ -686,9 +2451,32 @@ public class TorchView extends LinearLayout {
 		ss.messageDuration = messageDuration;
 		ss.outAnimationResource = outAnimationResource;
 
-		ArrayList<Message> messages = new ArrayList<Message>();
-		messages.addAll(currentMessages);
-		messages.addAll(messageQueue);
+		if (journal != null) {
+			// restored by the journal
+			ss.messages = new ArrayList<Message>();
+			return ss;
+		}
+
+		int queued = savedQueueLimit > 0 ? Math.min(savedQueueLimit, messageQueue.size()) : messageQueue.size();
+		ArrayList<Message> messages = new ArrayList<Message>(currentMessages.size() + queued);
+		for (int slot = 0; slot < currentMessages.capacity(); slot++) {
+			if (currentMessages.valueAt(slot) != null) {
+				messages.add(currentMessages.valueAt(slot));
+			}
+		}
+		// keep the order in which the displayed messages were queued
+		Collections.sort(messages, new Comparator<Message>() {
+			@Override
+			public int compare(Message lhs, Message rhs) {
+				return lhs.key < rhs.key ? -1 : (lhs.key == rhs.key ? 0 : 1);
+			}
+		});
+		for (Message message : messageQueue) {
+			if (queued-- == 0) {
+				break;
+			}
+			messages.add(message);
+		}
 		ss.messages = messages;
 
 		return ss;
@@ -708,12 +2496,16 @@ public class TorchView extends LinearLayout {
 		inAnimationResource = ss.inAnimationResource;
 		maxConcurrent = ss.maxConcurrent;
 		messageDuration = ss.messageDuration;
+		viewPool.setMaxPerType(maxConcurrent);
 		outAnimationResource = ss.outAnimationResource;
 
-		currentMessages = new ArrayList<Message>();
-		removalQueue = new LinkedBlockingQueue<Message>();
-		messageQueue = new ArrayList<Message>();
-		messageQueue.addAll(ss.messages);
+		currentMessages = new LongHashMap<Message>();
+		pendingRemovals = new LongHashMap<Message>();
+		messageQueue = new MessageQueue();
+		messageIds = new LongHashMap<Message>(ss.messages.size());
+		for (Message message : ss.messages) {
+			add(message);
+		}
 	}
 
 	static class SavedState extends BaseSavedState {
@@ -739,8 +2531,7 @@ public class TorchView extends LinearLayout {
 			this.outAnimationResource = in.readInt();
 
 			// re-instantiate queue
-			messages = new ArrayList<Message>();
-			in.readList(messages, TorchView.class.getClassLoader());
+			messages = MessageCodec.readMessages(in, TorchView.class.getClassLoader());
 		}
 
 		@SuppressWarnings("NullableProblems")
@@ -753,7 +2544,7 @@ public class TorchView extends LinearLayout {
 			out.writeInt(this.messageDuration);
 			out.writeInt(this.inAnimationResource);
 			out.writeInt(this.outAnimationResource);
-			out.writeList(this.messages);
+			MessageCodec.writeMessages(out, this.messages, flags);
 		}
 
 		//required field that makes Parcelables from a Parcel
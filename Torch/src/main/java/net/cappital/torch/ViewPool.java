@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 Reinier Goltstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.cappital.torch;
+
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Bounded pool of detached message Views, keyed by {@link Message#getViewType()}, that allows
+ * {@link TorchView} to reuse Views instead of inflating a new View for every message.
+ * <p/>
+ * This class is not thread-safe.
+ */
+final class ViewPool {
+
+	private final SparseArray<ArrayList<View>> scrap = new SparseArray<ArrayList<View>>();
+
+	private int maxPerType;
+
+	/**
+	 * @param maxPerType Maximum number of idle Views to keep for each view-type.
+	 */
+	ViewPool(int maxPerType) {
+		this.maxPerType = maxPerType;
+	}
+
+	void setMaxPerType(int maxPerType) {
+		this.maxPerType = maxPerType;
+		for (int i = 0; i < scrap.size(); i++) {
+			ArrayList<View> views = scrap.valueAt(i);
+			while (views.size() > maxPerType) {
+				views.remove(views.size() - 1);
+			}
+		}
+	}
+
+	/**
+	 * Takes an idle View of {@code viewType} from the pool.
+	 *
+	 * @return A View, or {@code null} if there is no idle View of this type.
+	 */
+	View acquire(int viewType) {
+		ArrayList<View> views = scrap.get(viewType);
+		if (views == null || views.isEmpty()) {
+			return null;
+		}
+		return views.remove(views.size() - 1);
+	}
+
+	/**
+	 * Puts a detached View back into the pool.
+	 *
+	 * @return {@code false} if the pool for {@code viewType} is full and the View was not kept.
+	 */
+	boolean release(int viewType, View view) {
+		ArrayList<View> views = scrap.get(viewType);
+		if (views == null) {
+			views = new ArrayList<View>(maxPerType);
+			scrap.put(viewType, views);
+		}
+		if (views.size() >= maxPerType) {
+			return false;
+		}
+		views.add(view);
+		return true;
+	}
+
+	void clear() {
+		scrap.clear();
+	}
+}
@@ -29,6 +29,7 @@ import android.widget.Toast;
 
 import net.cappital.torch.Message;
 import net.cappital.torch.TitleMessage;
+import net.cappital.torch.TorchManager;
 import net.cappital.torch.TorchView;
 
 public class MainActivity extends ActionBarActivity {
@@ -52,7 +53,7 @@ public class MainActivity extends ActionBarActivity {
 	/**
 	 * A placeholder fragment containing a simple view.
 	 */
-	public static class PlaceholderFragment extends Fragment implements TorchView.ViewBuilder {
+	public static class PlaceholderFragment extends Fragment implements TorchView.RecyclingViewBuilder {
 
 		private TorchView simpleTorch;
 
@@ -102,35 +103,35 @@ public class MainActivity extends ActionBarActivity {
 			simpleTorch = (TorchView) view.findViewById(0x8281def);
 			titleTorch = (TorchView) view.findViewById(0x7271def);
 
-			if (simpleTorch == null) {
+			if (simpleTorch == null || titleTorch == null) {
+				// both channels share one container
+				TorchManager torchManager = new TorchManager(getActivity());
+				torchManager.attach(getActivity());
+
 				// uses default View with custom background
-				simpleTorch = new TorchView(getActivity(), 5, TorchView.LENGTH_SHORT);
-				simpleTorch.attach(getActivity());
+				simpleTorch = torchManager.addChannel(5, TorchView.LENGTH_SHORT);
 				simpleTorch.setBackgroundResource(android.R.color.holo_blue_bright);
-			} else {
-				simpleTorch.show();
-			}
 
-			if (titleTorch == null) {
 				Log.d(TAG, "new title");
-				titleTorch = new TorchView(getActivity(), 2, TorchView.LENGTH_LONG);
-				titleTorch.attach(getActivity());
+				titleTorch = torchManager.addChannel(2, TorchView.LENGTH_LONG);
 				titleTorch.setViewBuilder(this);
 				titleTorch.setInAnimationResource(R.anim.torch_wrapper_in);
 				titleTorch.setOutAnimationResource(R.anim.torch_wrapper_out);
-				titleTorch.setViewBuilder(this);
 
-				// set ID to remember state across orientation-change
+				// set IDs to remember state across orientation-change
+				simpleTorch.setId(0x8281def);
 				titleTorch.setId(0x7271def);
 			} else {
-				Log.d(TAG, "reuse existing title");
+				Log.d(TAG, "reuse existing channels");
 				titleTorch.setViewBuilder(this);
+				simpleTorch.show();
 				titleTorch.show();
 			}
 		}
 
 		private void showSimpleMessage() {
-			Message message = new Message("Message #"+messagesShown+"...");
+			// pooled: recycled by TorchView once it has been removed
+			Message message = Message.obtain("Message #" + messagesShown + "...");
 			// shows message when it reaches the top of queue
 			simpleTorch.show(message);
 		}
@@ -155,15 +156,32 @@ public class MainActivity extends ActionBarActivity {
 
 		@Override
 		public View getView(Context context, Message message) {
-			return getTitleView(context, message);
+			View view = createView(context, message.getViewType());
+			bindView(view, message);
+			return view;
+		}
+
+		@Override
+		public View createView(Context context, int viewType) {
+			return getTitleView(context);
 		}
 
-		View getTitleView(Context context, Message m) {
+		@Override
+		public void bindView(View view, Message m) {
 			TitleMessage message = (TitleMessage) m;
 
-			BlockButton btn = new BlockButton(context);
+			BlockButton btn = (BlockButton) view;
 			btn.setTitle(message.getTitle());
 			btn.setText(message.getContent());
+		}
+
+		@Override
+		public void unbindView(View view) {
+			// nothing to release
+		}
+
+		View getTitleView(Context context) {
+			BlockButton btn = new BlockButton(context);
 			btn.setIconResource(R.drawable.ic_action_undo);
 			btn.setOnClickListener(new View.OnClickListener() {
 				@Override